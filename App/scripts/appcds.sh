@@ -0,0 +1,33 @@
+#!/bin/sh
+# Genera el archivo AppCDS de la app (JDK 13+): corre una ejecución de
+# entrenamiento (--entrenar) y guarda las clases cargadas en el archivo.
+#
+# Uso: scripts/appcds.sh [archivo.jsa]        (desde App/, por defecto target/app.jsa)
+#
+# Variables opcionales:
+#   JAR            jar de la app (por defecto target/App-1.0-SNAPSHOT.jar; si no
+#                  existe se construye con "mvn package")
+#   APP_CATALOGO   imagen binaria del catálogo a usar también en el entrenamiento
+#                  (así quedan archivadas las clases de lectura de la imagen)
+#
+# Después:
+#   java -XX:SharedArchiveFile=target/app.jsa -Dapp.catalogo=catalogo.bin \
+#        -cp target/App-1.0-SNAPSHOT.jar com.crnahuas.app.AppPatrones
+set -eu
+
+cd "$(dirname "$0")/.."
+JSA="${1:-target/app.jsa}"
+JAR="${JAR:-target/App-1.0-SNAPSHOT.jar}"
+
+if [ ! -f "$JAR" ]; then
+    mvn -B -q -DskipTests package
+fi
+
+set -- -XX:ArchiveClassesAtExit="$JSA"
+if [ -n "${APP_CATALOGO:-}" ]; then
+    set -- "$@" -Dapp.catalogo="$APP_CATALOGO"
+fi
+java "$@" -cp "$JAR" com.crnahuas.app.AppPatrones --entrenar
+
+echo "Archivo AppCDS: $JSA"
+echo "Uso: java -XX:SharedArchiveFile=$JSA -cp $JAR com.crnahuas.app.AppPatrones"
@@ -3,6 +3,9 @@ package com.crnahuas.app;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Aplicación de consola para gestionar carrito y descuentos. - Usa
@@ -14,6 +17,11 @@ public class AppPatrones {
 
     private static final BufferedReader IN = new BufferedReader(new InputStreamReader(System.in));
 
+    /**
+     * Filas por página al listar catálogo y carrito.
+     */
+    private static final int PAGE_SIZE = 10;
+
     /* ===================== Utilidades ===================== */
     /**
      * Pausa simple para lectura.
@@ -64,22 +72,43 @@ public class AppPatrones {
         }
     }
 
+    /**
+     * Entre páginas: true si el usuario quiere ver la siguiente.
+     */
+    private static boolean nextPage(int actual, int total) {
+        if (actual >= total) {
+            return false;
+        }
+        String r = readLine("Página " + actual + "/" + total + " - ENTER = siguiente, q = terminar: ");
+        return r == null || !r.trim().equalsIgnoreCase("q");
+    }
+
     /* ===================== Impresiones con printf ===================== */
     /**
-     * Muestra el catálogo en forma tabular.
+     * Muestra el catálogo en forma tabular, página a página.
      */
     private static void printCatalog(Component[] catalog) {
         System.out.println("\n=== Catálogo de productos ===");
+        if (catalog.length == 0) {
+            System.out.println("(vacío)");
+            return;
+        }
         System.out.printf("%-3s | %-18s | %-10s | %8s%n", "#", "Producto", "Categoria", "Precio");
         System.out.println("-------------------------------------------------------");
-        for (int i = 0; i < catalog.length; i++) {
-            System.out.printf("%3d | %-18s | %-10s | %8.2f%n",
-                    i + 1, catalog[i].getNombre(), catalog[i].getCategoria(), catalog[i].getPrecio());
-        }
+        PagedView<Component> view = new PagedView<>(Arrays.asList(catalog), PAGE_SIZE); // vista, sin copia
+        int pag = 1;
+        do {
+            int i = view.desplazamiento(pag);
+            for (Component c : view.pagina(pag)) {
+                System.out.printf("%3d | %-18s | %-10s | %8.2f%n",
+                        ++i, c.getNombre(), c.getCategoria(), c.getPrecio());
+            }
+        } while (nextPage(pag++, view.totalPaginas()));
     }
 
     /**
-     * Muestra el carrito en forma tabular.
+     * Muestra el carrito en forma tabular, página a página (los precios se
+     * calculan solo para las filas mostradas).
      */
     private static void printCart(Cart cart) {
         System.out.println("\n=== Carrito de compras===");
@@ -92,22 +121,40 @@ public class AppPatrones {
                 "#", "Producto", "Categoria", "Precio", "Precio Desc.", "Cant", "Total");
         System.out.println("--------------------------------------------------------------------------------");
 
-        DiscountManager dm = DiscountManager.getInstance();
-        int i = 1;
-        for (CartItem ci : cart.getItems()) {
-            double base = ci.getBase().getPrecio();
-            double desc = dm.calcularPrecio(ci.getActual());
-            double linea = Math.round(desc * ci.getQuantity() * 100.0) / 100.0;
-
-            System.out.printf("%3d | %-18s | %-10s | %8.2f | %8.2f | %3d | %8.2f%n",
-                    i++, ci.getBase().getNombre(), ci.getBase().getCategoria(),
-                    base, desc, ci.getQuantity(), linea);
-        }
+        PagedView<CartItem> view = new PagedView<>(cart.getItems(), PAGE_SIZE);
+        int pag = 1;
+        do {
+            int i = view.desplazamiento(pag);
+            for (CartItem ci : view.pagina(pag)) {
+                CartRow row = new CartRow(++i, ci);
+                System.out.printf("%3d | %-18s | %-10s | %8.2f | %8.2f | %3d | %8.2f%n",
+                        row.getNumero(), row.getBase().getNombre(), row.getBase().getCategoria(),
+                        row.getBase().getPrecio(), row.getPrecioDescuento(), row.getQuantity(), row.getTotalLinea());
+            }
+        } while (nextPage(pag++, view.totalPaginas()));
 
         System.out.println("--------------------------------------------------------------------------------");
         System.out.printf("Subtotal Carrito: %8.2f%n", cart.total());
     }
 
+    /**
+     * Muestra los resultados de una búsqueda con el mismo # del catálogo.
+     */
+    private static void printResultados(CatalogIndex index, List<Integer> ids) {
+        System.out.println("\n=== Resultados ===");
+        if (ids.isEmpty()) {
+            System.out.println("(sin coincidencias)");
+            return;
+        }
+        System.out.printf("%-3s | %-18s | %-10s | %8s%n", "#", "Producto", "Categoria", "Precio");
+        System.out.println("-------------------------------------------------------");
+        for (int id : ids) {
+            Component c = index.get(id);
+            System.out.printf("%3d | %-18s | %-10s | %8.2f%n",
+                    id + 1, c.getNombre(), c.getCategoria(), c.getPrecio());
+        }
+    }
+
     /* ===================== Menú ===================== */
     private static void menu() {
         System.out.println("\n===== MENÚ =====");
@@ -120,25 +167,77 @@ public class AppPatrones {
         System.out.println("7) Aplicar 20% por CATEGORÍA a TODO el carrito");
         System.out.println("8) Aplicar MONTO FIJO por línea a TODO el carrito");
         System.out.println("9) Limpiar DESCUENTOS del carrito");
+        System.out.println("10) Buscar en catálogo");
+        System.out.println("11) Aplicar PROMOCIÓN (estrategias disponibles) a TODO el carrito");
         System.out.println("0) Salir");
     }
 
+    /* ===================== Eventos ===================== */
+    /**
+     * Abre el archivo de eventos si se indicó -Dapp.eventos=archivo (null si
+     * no). Los eventos se guardan en ese archivo para poder reproducirlos.
+     */
+    private static FileCartEventSink abrirSinkEventos() {
+        String archivo = System.getProperty("app.eventos");
+        if (archivo == null || archivo.isBlank()) {
+            return null;
+        }
+        try {
+            return new FileCartEventSink(Path.of(archivo));
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el archivo de eventos: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Crea e inicia el buffer de eventos que entrega al sink (null si no hay
+     * sink).
+     */
+    private static CartEventRing crearEventos(FileCartEventSink sink) {
+        if (sink == null) {
+            return null;
+        }
+        CartEventRing ring = new CartEventRing(1024, CartEventRing.Politica.BLOQUEAR, 64);
+        ring.agregarConsumidor(sink);
+        ring.iniciar();
+        return ring;
+    }
+
     /* ===================== Main ===================== */
     /**
-     * Main de la app de consola. - Catálogo fijo para simplificar la demo. -
-     * Commands para mutar el carrito y aplicar decoradores a todas las líneas.
+     * Main de la app de consola. - Catálogo fijo o imagen binaria
+     * (-Dapp.catalogo=archivo). - Commands para mutar el carrito y aplicar
+     * decoradores a todas las líneas. - Argumentos opcionales:
+     * "--exportar-catalogo archivo" escribe la imagen del catálogo fijo;
+     * "--entrenar" corre una ejecución de entrenamiento para AppCDS y sale.
      */
     public static void main(String[] args) {
-        // Catálogo base (nivel estudiante)
-        Component[] catalog = new Component[]{
-            new ProductComponent("Polera básica", "BASICO", 14990),
-            new ProductComponent("Zapatilla running", "CALZADO", 49990),
-            new ProductComponent("Jeans slim", "BASICO", 29990),
-            new ProductComponent("Chaqueta liviana", "ABRIGO", 39990)
-        };
-
-        Cart cart = new Cart();
-        CartContext cartCtx = new CartContext(cart);
+        long t0 = System.nanoTime();
+        if (args.length == 2 && args[0].equals("--exportar-catalogo")) {
+            try {
+                CatalogImage.escribir(Startup.catalogoPorDefecto(), Path.of(args[1]));
+                System.out.println("Catálogo exportado a " + args[1]);
+            } catch (IOException e) {
+                System.out.println("No se pudo exportar el catálogo: " + e.getMessage());
+            }
+            return;
+        }
+
+        // Catálogo, índice de búsqueda, stock y promociones (punto de checkpoint)
+        Startup init = Startup.inicializar(t0);
+        if (args.length == 1 && args[0].equals("--entrenar")) {
+            Startup.entrenar(init);
+            return;
+        }
+        Component[] catalog = init.getCatalog();
+        CatalogIndex index = init.getIndex();
+        Inventario inventario = init.getInventario();
+
+        Cart cart = new Cart(inventario);
+        FileCartEventSink sink = abrirSinkEventos();
+        CartEventRing eventos = crearEventos(sink);
+        CartContext cartCtx = new CartContext(cart, eventos);
         Invoker inv = new Invoker();
 
         int op;
@@ -159,7 +258,12 @@ public class AppPatrones {
                     }
                     int qty = readInt("Cantidad: ");
                     inv.agregar(new AddProductToCartCommand(cartCtx, catalog[idx - 1], qty));
-                    inv.ejecutarTodo();
+                    try {
+                        inv.ejecutarTodo();
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        System.out.println("No se pudo agregar: " + e.getMessage()
+                                + " (disponible: " + inventario.disponible(catalog[idx - 1].getNombre()) + ")");
+                    }
                     printCart(cart);
                     pause();
                 }
@@ -219,11 +323,48 @@ public class AppPatrones {
                     printCart(cart);
                     pause();
                 }
+                case 10 -> { // Buscar por prefijo (o aproximado si no hay coincidencias)
+                    String q = readLine("Buscar (nombre o inicio de palabra): ");
+                    String cat = readLine("Categoría (ENTER = todas): ");
+                    printResultados(index, index.buscar(q, cat, 20));
+                    pause();
+                }
+                case 11 -> { // Estrategias del SPI (se apila)
+                    System.out.println("\n=== Promociones disponibles ===");
+                    for (DiscountStrategy s : DiscountStrategies.todas()) {
+                        System.out.printf("%-8s | %s%n", s.id(), s.descripcion());
+                    }
+                    DiscountStrategy s = DiscountStrategies.get(readLine("Id de promoción: "));
+                    if (s == null) {
+                        System.out.println("Promoción no encontrada");
+                        break;
+                    }
+                    try {
+                        inv.agregar(new ApplyStrategyToAllCommand(cartCtx, s, readLine("Parámetro: ")));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Parámetro inválido: " + e.getMessage());
+                        break;
+                    }
+                    inv.ejecutarTodo();
+                    printCart(cart);
+                    pause();
+                }
                 case 0 ->
                     System.out.println("Saliendo...");
                 default ->
                     System.out.println("Opción no válida.");
             }
         } while (op != 0);
+
+        if (eventos != null) {
+            eventos.detener(); // entrega lo pendiente antes de salir
+        }
+        if (sink != null) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.out.println("No se pudo cerrar el archivo de eventos: " + e.getMessage());
+            }
+        }
     }
 }
@@ -2,8 +2,12 @@ package com.crnahuas.app;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Carrito con múltiples líneas (ítems) y operaciones básicas. Cada línea
@@ -12,18 +16,97 @@ import java.util.List;
 public class Cart {
 
     private final List<CartItem> items = new ArrayList<>();
+    /** Líneas por nombre normalizado (búsqueda O(1)). */
+    private final Map<String, CartItem> porNombre = new HashMap<>();
+    private final Inventario inventario;
+    /**
+     * Versión del carrito: sube con cada cambio (líneas, cantidades o
+     * descuentos).
+     */
+    private long version;
+    /** Subtotal calculado en {@link #versionSubtotal} (-1 = nunca). */
+    private double subtotal;
+    private long versionSubtotal = -1;
+    /** Cambios desde la última toma (null = sin seguimiento, ver {@link #seguirCambios}). */
+    private Cambios cambios;
+
+    /**
+     * Líneas cambiadas desde la última toma, para calcular deltas sin
+     * recorrer todo el carrito ({@link CartTracker}).
+     */
+    static final class Cambios {
+
+        /** Líneas agregadas, quitadas o con cantidad o descuentos distintos. */
+        final Set<String> tocadas = new LinkedHashSet<>();
+        /**
+         * Líneas que quedaron al final del carrito (agregadas, o quitadas y
+         * vueltas a agregar), en el orden en que llegaron ahí.
+         */
+        final Set<String> alFinal = new LinkedHashSet<>();
+    }
+
+    /**
+     * Carrito sin control de stock.
+     */
+    public Cart() {
+        this(null);
+    }
+
+    /**
+     * @param inventario libro de stock donde reservar/liberar (null = sin
+     * control de stock)
+     */
+    Cart(Inventario inventario) {
+        this.inventario = inventario;
+    }
 
     /* --- Helpers internos --- */
     private String norm(String s) {
         return (s == null) ? "" : s.trim().toLowerCase();
     }
 
+    /**
+     * Registra un cambio en la línea del producto (también lo llaman las
+     * líneas al cambiar sus descuentos).
+     */
+    void tocar(CartItem ci) {
+        tocar(norm(ci.getBase().getNombre()));
+    }
+
+    private void tocar(String clave) {
+        version++;
+        if (cambios != null) {
+            cambios.tocadas.add(clave);
+        }
+    }
+
+    /**
+     * Registra que la línea quedó al final del carrito.
+     */
+    private void alFinal(String clave) {
+        if (cambios != null) {
+            cambios.alFinal.remove(clave); // reinsertar la deja última
+            cambios.alFinal.add(clave);
+        }
+    }
+
+    private void quitarIndice(CartItem ci) {
+        porNombre.remove(norm(ci.getBase().getNombre()));
+    }
+
+    private void liberar(CartItem ci, int qty) {
+        if (inventario != null) {
+            inventario.liberar(ci.getBase().getNombre(), qty);
+        }
+    }
+
     /**
      * Agrega un producto al carrito. Si ya existe por nombre, acumula la
-     * cantidad.
+     * cantidad. Con inventario, primero reserva el stock.
      *
      * @param base producto base (no nulo)
      * @param qty cantidad (> 0)
+     * @throws IllegalStateException si no hay stock suficiente
      */
     public void add(Component base, int qty) {
         if (base == null) {
@@ -32,14 +115,21 @@ public class Cart {
         if (qty <= 0) {
             throw new IllegalArgumentException("qty > 0");
         }
+        if (inventario != null && !inventario.reservar(base.getNombre(), qty)) {
+            throw new IllegalStateException("Stock insuficiente");
+        }
         String target = norm(base.getNombre());
-        for (CartItem ci : items) {
-            if (norm(ci.getBase().getNombre()).equals(target)) {
-                ci.addQuantity(qty);
-                return;
-            }
+        CartItem existente = porNombre.get(target);
+        if (existente != null) {
+            existente.addQuantity(qty);
+            tocar(target);
+            return;
         }
-        items.add(new CartItem(base, qty));
+        CartItem nuevo = new CartItem(this, base, qty);
+        items.add(nuevo);
+        porNombre.put(target, nuevo);
+        tocar(target);
+        alFinal(target);
     }
 
     /**
@@ -51,6 +141,9 @@ public class Cart {
             CartItem ci = it.next();
             if (norm(ci.getBase().getNombre()).equals(target)) {
                 it.remove();
+                quitarIndice(ci);
+                liberar(ci, ci.getQuantity());
+                tocar(target);
                 return true;
             }
         }
@@ -66,10 +159,13 @@ public class Cart {
         for (Iterator<CartItem> it = items.iterator(); it.hasNext();) {
             CartItem ci = it.next();
             if (norm(ci.getBase().getNombre()).equals(target)) {
+                liberar(ci, Math.min(amount, ci.getQuantity()));
                 ci.decreaseQuantity(amount);
                 if (ci.getQuantity() <= 0) {
                     it.remove();
+                    quitarIndice(ci);
                 }
+                tocar(target);
                 return true;
             }
         }
@@ -85,7 +181,10 @@ public class Cart {
         if (idx < 0 || idx >= items.size()) {
             return false;
         }
-        items.remove(idx);
+        CartItem ci = items.remove(idx);
+        quitarIndice(ci);
+        liberar(ci, ci.getQuantity());
+        tocar(ci);
         return true;
     }
 
@@ -98,10 +197,13 @@ public class Cart {
             return false;
         }
         CartItem ci = items.get(idx);
+        liberar(ci, Math.min(amount, ci.getQuantity()));
         ci.decreaseQuantity(amount);
         if (ci.getQuantity() <= 0) {
             items.remove(idx);
+            quitarIndice(ci);
         }
+        tocar(ci);
         return true;
     }
 
@@ -114,6 +216,95 @@ public class Cart {
         return items.size();
     }
 
+    /**
+     * @return versión actual (sube con cada cambio)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Busca la línea de un producto por nombre (normalizado).
+     *
+     * @return la línea, o null si no está en el carrito
+     */
+    CartItem buscarLinea(String nombre) {
+        return porNombre.get(norm(nombre));
+    }
+
+    /**
+     * Mueve una línea al final del carrito (como si se hubiera quitado y
+     * vuelto a agregar, sin tocar stock ni cantidad).
+     *
+     * @throws IllegalArgumentException si el producto no está en el carrito
+     */
+    void moverAlFinal(String nombre) {
+        String clave = norm(nombre);
+        CartItem ci = porNombre.get(clave);
+        if (ci == null) {
+            throw new IllegalArgumentException("Producto no esta en el carrito: " + nombre);
+        }
+        items.remove(ci);
+        items.add(ci);
+        tocar(clave);
+        alFinal(clave);
+    }
+
+    /**
+     * Empieza a registrar qué líneas cambian. Las líneas que ya estaban
+     * cuentan como agregadas (el primer delta parte de un carrito vacío).
+     *
+     * @throws IllegalStateException si ya se seguían los cambios (un solo
+     * seguidor por carrito)
+     */
+    void seguirCambios() {
+        if (cambios != null) {
+            throw new IllegalStateException("El carrito ya tiene seguimiento de cambios");
+        }
+        cambios = new Cambios();
+        for (CartItem ci : items) {
+            String clave = norm(ci.getBase().getNombre());
+            cambios.tocadas.add(clave);
+            cambios.alFinal.add(clave);
+        }
+    }
+
+    /**
+     * @return cambios desde la toma anterior (y empieza a juntar de nuevo)
+     * @throws IllegalStateException si no se llamó a {@link #seguirCambios}
+     */
+    Cambios tomarCambios() {
+        if (cambios == null) {
+            throw new IllegalStateException("El carrito no tiene seguimiento de cambios");
+        }
+        Cambios c = cambios;
+        cambios = new Cambios();
+        return c;
+    }
+
+    /**
+     * Devuelve cambios tomados que no se pudieron enviar; quedan antes de los
+     * registrados después.
+     */
+    void devolverCambios(Cambios anteriores) {
+        if (cambios == null || anteriores == null) {
+            throw new IllegalStateException("El carrito no tiene seguimiento de cambios");
+        }
+        anteriores.tocadas.addAll(cambios.tocadas);
+        for (String k : cambios.alFinal) {
+            anteriores.alFinal.remove(k);
+            anteriores.alFinal.add(k);
+        }
+        cambios = anteriores;
+    }
+
+    /**
+     * @return true si el carrito reserva stock en un inventario
+     */
+    boolean tieneInventario() {
+        return inventario != null;
+    }
+
     /**
      * Restaura todas las líneas a su producto base (limpia descuentos).
      */
@@ -125,18 +316,24 @@ public class Cart {
 
     /**
      * Subtotal del carrito = suma (precio actual decorado * cantidad) por
-     * línea.
+     * línea. Se recalcula solo si cambió la versión (mostrar el carrito varias
+     * veces sin cambios no recorre las líneas).
      *
      * @return total con 2 decimales
      */
     public double total() {
+        if (versionSubtotal == version) {
+            return subtotal;
+        }
         double sum = 0;
         DiscountManager dm = DiscountManager.getInstance();
         for (CartItem ci : items) {
-            double unit = dm.calcularPrecio(ci.getActual());
+            double unit = dm.calcularPrecio(ci.getPlan());
             sum += unit * ci.getQuantity();
         }
-        return Math.round(sum * 100.0) / 100.0;
+        subtotal = Math.round(sum * 100.0) / 100.0;
+        versionSubtotal = version;
+        return subtotal;
     }
 }
 
@@ -145,8 +342,10 @@ public class Cart {
  */
 class CartItem {
 
+    private final Cart owner;
     private final Component base;
     private Component actual;
+    private StackingPlan plan;
     private int quantity;
 
     /**
@@ -154,14 +353,26 @@ class CartItem {
      * @param quantity cantidad (> 0)
      */
     public CartItem(Component base, int quantity) {
+        this(null, base, quantity);
+    }
+
+    /**
+     * @param owner carrito al que avisar los cambios de descuento (puede ser
+     * null)
+     * @param base producto base (no nulo)
+     * @param quantity cantidad (> 0)
+     */
+    CartItem(Cart owner, Component base, int quantity) {
         if (base == null) {
             throw new IllegalArgumentException("base nula");
         }
         if (quantity <= 0) {
             throw new IllegalArgumentException("quantity > 0");
         }
+        this.owner = owner;
         this.base = base;
         this.actual = base; // al inicio sin decoradores
+        this.plan = StackingPlan.compilar(base);
         this.quantity = quantity;
     }
 
@@ -180,10 +391,22 @@ class CartItem {
     }
 
     /**
-     * Establece un nuevo componente decorado para la línea.
+     * @return plan de precio precalculado para el componente actual
+     */
+    StackingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Establece un nuevo componente decorado para la línea y recompila su plan
+     * de apilamiento (una vez por aplicación, no por lectura de precio).
      */
     public void setActual(Component nuevo) {
+        this.plan = StackingPlan.compilar(nuevo);
         this.actual = nuevo;
+        if (owner != null) {
+            owner.tocar(this);
+        }
     }
 
     /**
@@ -222,5 +445,9 @@ class CartItem {
      */
     public void resetDecorators() {
         this.actual = base;
+        this.plan = StackingPlan.compilar(base);
+        if (owner != null) {
+            owner.tocar(this);
+        }
     }
 }
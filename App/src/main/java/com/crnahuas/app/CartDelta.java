@@ -0,0 +1,177 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delta compacto entre dos versiones de un carrito. Solo incluye las líneas que
+ * cambiaron, así el tamaño depende del cambio y no del carrito. Cada operación
+ * lleva su precondición (cantidad o cantidad de capas esperada) para detectar
+ * conflictos al aplicarla en otra réplica ({@link CartReplica}). El orden de
+ * las líneas también es parte del estado (los comandos usan índices): como el
+ * carrito solo agrega al final, una línea quitada y vuelta a agregar viaja como
+ * MOVER_AL_FINAL (sin mandar la lista completa).
+ *
+ * {@link #entre} compara dos fotos completas; {@link CartTracker} arma el
+ * mismo delta solo con las líneas que cambiaron.
+ */
+final class CartDelta {
+
+    enum Tipo {
+        AGREGAR_LINEA,
+        QUITAR_LINEA,
+        CAMBIAR_CANTIDAD,
+        PUSH_DESCUENTO,
+        POP_DESCUENTOS,
+        MOVER_AL_FINAL
+    }
+
+    /**
+     * Operación sobre una línea (identificada por nombre normalizado).
+     */
+    static final class Op {
+
+        final Tipo tipo;
+        final String producto;
+        /** Producto base (solo AGREGAR_LINEA). */
+        final Component base;
+        /** Precondición: cantidad (QUITAR/CAMBIAR/MOVER) o #capas (PUSH/POP). */
+        final int esperado;
+        /** Nueva cantidad (AGREGAR/CAMBIAR) o #capas a quitar (POP). */
+        final int valor;
+        /** Regla a apilar (solo PUSH_DESCUENTO). */
+        final DiscountRule regla;
+
+        Op(Tipo tipo, String producto, Component base, int esperado, int valor, DiscountRule regla) {
+            this.tipo = tipo;
+            this.producto = producto;
+            this.base = base;
+            this.esperado = esperado;
+            this.valor = valor;
+            this.regla = regla;
+        }
+
+        @Override
+        public String toString() {
+            return tipo + " " + producto + " (" + esperado + " -> " + valor + ")"
+                    + (regla == null ? "" : " " + regla);
+        }
+    }
+
+    private final long desde;
+    private final long hasta;
+    private final List<Op> ops;
+
+    CartDelta(long desde, long hasta, List<Op> ops) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.ops = Collections.unmodifiableList(ops);
+    }
+
+    /**
+     * Calcula el delta para pasar de la foto {@code a} a la foto {@code b}.
+     * Orden: quitar líneas, cambiar las que quedan en su lugar y, al final,
+     * agregar las nuevas y mover las que en {@code b} quedaron detrás (como
+     * Cart.add, que agrega al final).
+     */
+    static CartDelta entre(CartSnapshot a, CartSnapshot b) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("snapshot nulo");
+        }
+        Map<String, CartSnapshot.Linea> antes = a.getLineas();
+        Map<String, CartSnapshot.Linea> despues = b.getLineas();
+        List<Op> ops = new ArrayList<>();
+
+        List<String> quedan = new ArrayList<>();
+        for (Map.Entry<String, CartSnapshot.Linea> e : antes.entrySet()) {
+            if (despues.containsKey(e.getKey())) {
+                quedan.add(e.getKey());
+            } else {
+                ops.add(new Op(Tipo.QUITAR_LINEA, e.getKey(), null, e.getValue().cantidad, 0, null));
+            }
+        }
+        // Las líneas que siguen en su lugar son el prefijo común con el orden
+        // de b; el resto de b va al final, en orden (agregadas o movidas).
+        List<String> objetivo = new ArrayList<>(despues.keySet());
+        int enSuLugar = 0;
+        while (enSuLugar < quedan.size() && quedan.get(enSuLugar).equals(objetivo.get(enSuLugar))) {
+            enSuLugar++;
+        }
+        for (int i = 0; i < enSuLugar; i++) {
+            String k = objetivo.get(i);
+            diffLinea(k, antes.get(k), despues.get(k), ops);
+        }
+        for (int i = enSuLugar; i < objetivo.size(); i++) {
+            String k = objetivo.get(i);
+            CartSnapshot.Linea viejo = antes.get(k);
+            if (viejo != null) {
+                ops.add(new Op(Tipo.MOVER_AL_FINAL, k, null, viejo.cantidad, 0, null));
+            }
+            diffLinea(k, viejo, despues.get(k), ops);
+        }
+        return new CartDelta(a.getVersion(), b.getVersion(), ops);
+    }
+
+    /**
+     * Operaciones para pasar una línea de {@code viejo} (null = no estaba; se
+     * agrega al final) a {@code nuevo}.
+     */
+    static void diffLinea(String producto, CartSnapshot.Linea viejo, CartSnapshot.Linea nuevo, List<Op> ops) {
+        if (viejo == null) {
+            ops.add(new Op(Tipo.AGREGAR_LINEA, producto, nuevo.base, 0, nuevo.cantidad, null));
+            diffCapas(producto, List.of(), nuevo.capas, ops);
+            return;
+        }
+        if (viejo.cantidad != nuevo.cantidad) {
+            ops.add(new Op(Tipo.CAMBIAR_CANTIDAD, producto, null, viejo.cantidad, nuevo.cantidad, null));
+        }
+        diffCapas(producto, viejo.capas, nuevo.capas, ops);
+    }
+
+    /**
+     * Pila de descuentos: conserva el prefijo común (capas internas), quita el
+     * resto de la pila vieja y apila lo nuevo.
+     */
+    private static void diffCapas(String producto, List<DiscountRule> viejas, List<DiscountRule> nuevas,
+            List<Op> ops) {
+        int comun = 0;
+        while (comun < viejas.size() && comun < nuevas.size() && viejas.get(comun).equals(nuevas.get(comun))) {
+            comun++;
+        }
+        if (viejas.size() > comun) {
+            ops.add(new Op(Tipo.POP_DESCUENTOS, producto, null, viejas.size(), viejas.size() - comun, null));
+        }
+        for (int i = comun; i < nuevas.size(); i++) {
+            ops.add(new Op(Tipo.PUSH_DESCUENTO, producto, null, i, 0, nuevas.get(i)));
+        }
+    }
+
+    /**
+     * @return versión de origen sobre la que se calculó el delta
+     */
+    long getDesde() {
+        return desde;
+    }
+
+    /**
+     * @return versión de origen a la que lleva el delta
+     */
+    long getHasta() {
+        return hasta;
+    }
+
+    List<Op> getOps() {
+        return ops;
+    }
+
+    boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Delta v" + desde + " -> v" + hasta + " " + ops;
+    }
+}
@@ -0,0 +1,110 @@
+package com.crnahuas.app;
+
+/**
+ * Evento tipado de cambio del carrito. Lo emiten los comandos después de mutar
+ * el carrito para que consumidores externos (analítica, reservas de stock) no
+ * tengan que comparar carros completos.
+ */
+final class CartEvent {
+
+    private final CartEventType tipo;
+    private final long timestamp;
+    private final String producto;
+    private final int linea;
+    private final int cantidad;
+    private final String detalle;
+
+    /**
+     * @param tipo tipo de cambio (no nulo)
+     * @param timestamp instante en milisegundos
+     * @param producto nombre del producto afectado ("" si aplica a todo el carro)
+     * @param linea línea afectada (1-based; 0 si aplica a todo el carro)
+     * @param cantidad cantidad involucrada (0 si no aplica)
+     * @param detalle texto libre (p. ej. nombre del descuento)
+     */
+    CartEvent(CartEventType tipo, long timestamp, String producto, int linea, int cantidad, String detalle) {
+        if (tipo == null) {
+            throw new IllegalArgumentException("tipo nulo");
+        }
+        this.tipo = tipo;
+        this.timestamp = timestamp;
+        this.producto = (producto == null) ? "" : producto;
+        this.linea = linea;
+        this.cantidad = cantidad;
+        this.detalle = (detalle == null) ? "" : detalle;
+    }
+
+    /**
+     * Crea un evento con el instante actual.
+     */
+    static CartEvent of(CartEventType tipo, String producto, int linea, int cantidad, String detalle) {
+        return new CartEvent(tipo, System.currentTimeMillis(), producto, linea, cantidad, detalle);
+    }
+
+    public CartEventType getTipo() {
+        return tipo;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getProducto() {
+        return producto;
+    }
+
+    public int getLinea() {
+        return linea;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public String getDetalle() {
+        return detalle;
+    }
+
+    /**
+     * Serializa a una línea separada por tabuladores (formato del sink en
+     * archivo).
+     */
+    String toLinea() {
+        return tipo.name() + '\t' + timestamp + '\t' + limpiar(producto) + '\t'
+                + linea + '\t' + cantidad + '\t' + limpiar(detalle);
+    }
+
+    /**
+     * Reconstruye un evento desde {@link #toLinea()}.
+     *
+     * @throws IllegalArgumentException si la línea no tiene el formato esperado
+     */
+    static CartEvent fromLinea(String s) {
+        String[] p = (s == null) ? new String[0] : s.split("\t", -1);
+        if (p.length != 6) {
+            throw new IllegalArgumentException("Linea de evento invalida");
+        }
+        return new CartEvent(CartEventType.valueOf(p[0]), Long.parseLong(p[1]), p[2],
+                Integer.parseInt(p[3]), Integer.parseInt(p[4]), p[5]);
+    }
+
+    private static String limpiar(String s) {
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    @Override
+    public String toString() {
+        return tipo + " " + producto + " #" + linea + " x" + cantidad + " " + detalle;
+    }
+}
+
+/**
+ * Tipos de cambio que puede sufrir el carrito.
+ */
+enum CartEventType {
+    PRODUCTO_AGREGADO,
+    LINEA_ELIMINADA,
+    CANTIDAD_DISMINUIDA,
+    DESCUENTO_APLICADO,
+    DESCUENTOS_LIMPIADOS
+}
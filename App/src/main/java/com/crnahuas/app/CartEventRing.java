@@ -0,0 +1,273 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular acotado y sin locks (estilo disruptor) para publicar
+ * {@link CartEvent}. - Varios productores reservan secuencias con CAS. - Un
+ * único despachador drena por lotes y los entrega a todos los consumidores. -
+ * Cuando está lleno aplica la {@link Politica} configurada (nunca crece). - Sin
+ * eventos, el despachador espera en fases (spin, yield, park) y queda dormido
+ * hasta que un productor lo despierta: no hay sondeo periódico.
+ */
+final class CartEventRing {
+
+    /**
+     * Qué hacer al publicar con el buffer lleno.
+     */
+    enum Politica {
+        /** Espera (spin, yield, park) hasta que el despachador libere espacio. */
+        BLOQUEAR,
+        /** Descarta el evento nuevo y lo contabiliza. */
+        DESCARTAR
+    }
+
+    private final int mascara;
+    private final AtomicReferenceArray<CartEvent> slots;
+    /** Secuencia publicada en cada slot (-1 = vacío). */
+    private final AtomicLongArray publicados;
+    private final AtomicLong cursorProductor = new AtomicLong();
+    private final AtomicLong cursorConsumidor = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final Politica politica;
+    private final int maxLote;
+    private final List<CartEventListener> consumidores = new CopyOnWriteArrayList<>();
+
+    /** Vueltas de la espera en fases: hasta SPINS spin, hasta YIELDS yield, después park. */
+    private static final int SPINS = 100;
+    private static final int YIELDS = 200;
+
+    private volatile Thread despachador;
+    private volatile boolean activo;
+    /** true mientras el despachador está (o va a quedar) dormido en park. */
+    private volatile boolean durmiendo;
+
+    /**
+     * @param capacidad tamaño del buffer (potencia de 2, > 0)
+     * @param politica política ante buffer lleno (no nula)
+     * @param maxLote máximo de eventos por lote entregado (> 0)
+     */
+    CartEventRing(int capacidad, Politica politica, int maxLote) {
+        if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("capacidad debe ser potencia de 2");
+        }
+        if (politica == null) {
+            throw new IllegalArgumentException("politica nula");
+        }
+        if (maxLote <= 0) {
+            throw new IllegalArgumentException("maxLote > 0");
+        }
+        this.mascara = capacidad - 1;
+        this.slots = new AtomicReferenceArray<>(capacidad);
+        this.publicados = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            publicados.set(i, -1);
+        }
+        this.politica = politica;
+        this.maxLote = maxLote;
+    }
+
+    void agregarConsumidor(CartEventListener l) {
+        if (l == null) {
+            throw new IllegalArgumentException("consumidor nulo");
+        }
+        consumidores.add(l);
+    }
+
+    /**
+     * Publica un evento respetando la política de contrapresión.
+     *
+     * @return true si quedó en el buffer; false si fue descartado
+     */
+    boolean publicar(CartEvent e) {
+        if (e == null) {
+            throw new IllegalArgumentException("evento nulo");
+        }
+        int vueltas = 0;
+        while (true) {
+            long seq = cursorProductor.get();
+            if (seq - cursorConsumidor.get() > mascara) { // lleno
+                if (politica == Politica.DESCARTAR) {
+                    descartados.incrementAndGet();
+                    return false;
+                }
+                vueltas = esperarEspacio(vueltas);
+                continue;
+            }
+            if (cursorProductor.compareAndSet(seq, seq + 1)) {
+                int idx = (int) (seq & mascara);
+                slots.set(idx, e);
+                publicados.set(idx, seq); // visible para el despachador
+                if (durmiendo) {
+                    despertar();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param vueltas intentos previos de este productor
+     * @return intentos incluyendo este
+     */
+    private int esperarEspacio(int vueltas) {
+        Thread d = despachador;
+        if (d == null || d == Thread.currentThread()) {
+            drenar(); // sin despachador: el productor hace el trabajo
+            return 0;
+        }
+        if (durmiendo) {
+            despertar(); // lleno con el despachador dormido: que drene
+        }
+        esperarFase(vueltas);
+        return vueltas + 1;
+    }
+
+    private static void esperarFase(int vueltas) {
+        if (vueltas < SPINS) {
+            Thread.onSpinWait();
+        } else if (vueltas < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private void despertar() {
+        if (durmiendo) {
+            durmiendo = false;
+            Thread d = despachador;
+            if (d != null) {
+                LockSupport.unpark(d);
+            }
+        }
+    }
+
+    /**
+     * @return true si hay al menos un evento publicado sin entregar
+     */
+    private boolean hayPublicado() {
+        long next = cursorConsumidor.get();
+        return publicados.get((int) (next & mascara)) == next;
+    }
+
+    /**
+     * Entrega a los consumidores todos los eventos publicados, en lotes de
+     * hasta {@code maxLote}. Sincronizado: un solo hilo drena a la vez.
+     *
+     * @return cantidad de eventos entregados
+     */
+    synchronized int drenar() {
+        int total = 0;
+        while (true) {
+            long next = cursorConsumidor.get();
+            List<CartEvent> lote = new ArrayList<>(Math.min(maxLote, mascara + 1));
+            while (lote.size() < maxLote) {
+                int idx = (int) (next & mascara);
+                if (publicados.get(idx) != next) {
+                    break; // aún no publicado
+                }
+                lote.add(slots.getAndSet(idx, null));
+                next++;
+            }
+            if (lote.isEmpty()) {
+                return total;
+            }
+            cursorConsumidor.set(next); // libera los slots para los productores
+            List<CartEvent> vista = Collections.unmodifiableList(lote);
+            for (CartEventListener l : consumidores) {
+                try {
+                    l.onLote(vista);
+                } catch (RuntimeException ex) {
+                    System.err.println("Consumidor de eventos falló: " + ex.getMessage());
+                }
+            }
+            total += lote.size();
+        }
+    }
+
+    /**
+     * Inicia un hilo daemon que drena el buffer de forma continua.
+     */
+    synchronized void iniciar() {
+        if (despachador != null) {
+            return;
+        }
+        activo = true;
+        Thread t = new Thread(() -> {
+            int vueltas = 0;
+            while (activo) {
+                if (drenar() > 0) {
+                    vueltas = 0;
+                } else if (vueltas < YIELDS) {
+                    esperarFase(vueltas++);
+                } else {
+                    // Marca antes de revisar: un productor que publique después
+                    // ve durmiendo == true y hace unpark (el permiso no se pierde).
+                    durmiendo = true;
+                    if (activo && !hayPublicado()) {
+                        LockSupport.park(this);
+                    }
+                    durmiendo = false;
+                    vueltas = 0;
+                }
+            }
+        }, "cart-events");
+        t.setDaemon(true);
+        despachador = t;
+        t.start();
+    }
+
+    /**
+     * Detiene el despachador y entrega lo pendiente.
+     */
+    void detener() {
+        Thread t;
+        synchronized (this) {
+            t = despachador;
+            activo = false;
+            despachador = null;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drenar();
+    }
+
+    /**
+     * @return eventos publicados y aún no entregados
+     */
+    long pendientes() {
+        return cursorProductor.get() - cursorConsumidor.get();
+    }
+
+    /**
+     * @return eventos descartados por la política {@link Politica#DESCARTAR}
+     */
+    long getDescartados() {
+        return descartados.get();
+    }
+}
+
+/**
+ * Consumidor de eventos del carrito. Recibe lotes en orden de publicación.
+ */
+interface CartEventListener {
+
+    /**
+     * @param lote eventos en orden (lista de solo lectura, no vacía)
+     */
+    void onLote(List<CartEvent> lote);
+}
@@ -0,0 +1,158 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réplica de un carrito que se mantiene al día aplicando deltas de otro nodo.
+ * - Los deltas deben llegar en orden (desde = última versión aplicada). - Antes
+ * de tocar el carrito se validan todas las precondiciones; si alguna falla no
+ * se aplica nada y se informa el conflicto. - Cualquier cambio local desde el
+ * último delta (la versión del carrito local ya no es la que dejó la réplica)
+ * es un conflicto, aunque el contenido por nombre sea el mismo. - El carrito
+ * local no puede tener inventario: el stock lo reserva el nodo de origen, y
+ * así aplicar no tiene fallas a mitad de camino (todo o nada).
+ *
+ * Ver CartSyncSimulator (fuentes de prueba) para una simulación con dos nodos.
+ */
+final class CartReplica {
+
+    private final Cart cart;
+    private long versionOrigen;
+    /**
+     * Versión del carrito local tras el último delta aplicado.
+     */
+    private long versionLocal;
+
+    /**
+     * @param cart carrito local (no nulo, sin inventario)
+     * @throws IllegalArgumentException si el carrito reserva stock
+     */
+    CartReplica(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("cart nulo");
+        }
+        if (cart.tieneInventario()) {
+            throw new IllegalArgumentException("La replica no reserva stock: use un carrito sin inventario");
+        }
+        this.cart = cart;
+        this.versionLocal = cart.getVersion();
+    }
+
+    Cart getCart() {
+        return cart;
+    }
+
+    /**
+     * @return última versión del origen aplicada en esta réplica
+     */
+    long getVersionOrigen() {
+        return versionOrigen;
+    }
+
+    /**
+     * Aplica un delta completo o nada.
+     *
+     * @throws IllegalStateException si el delta está fuera de orden o alguna
+     * precondición no se cumple (conflicto)
+     */
+    void aplicar(CartDelta delta) {
+        if (delta == null) {
+            throw new IllegalArgumentException("delta nulo");
+        }
+        List<String> conflictos = validar(delta);
+        if (!conflictos.isEmpty()) {
+            throw new IllegalStateException("Conflicto de sincronización: " + conflictos);
+        }
+        for (CartDelta.Op op : delta.getOps()) {
+            CartItem ci = cart.buscarLinea(op.producto);
+            switch (op.tipo) {
+                case AGREGAR_LINEA ->
+                    cart.add(op.base, op.valor);
+                case QUITAR_LINEA ->
+                    cart.removeByProductName(op.producto);
+                case CAMBIAR_CANTIDAD -> {
+                    if (op.valor > op.esperado) {
+                        cart.add(ci.getBase(), op.valor - op.esperado);
+                    } else {
+                        cart.decreaseQuantityByProductName(op.producto, op.esperado - op.valor);
+                    }
+                }
+                case PUSH_DESCUENTO ->
+                    ci.setActual(new StrategyDecorator(ci.getActual(), op.regla));
+                case POP_DESCUENTOS -> {
+                    List<DiscountRule> capas = CartSnapshot.capas(ci.getActual());
+                    ci.setActual(CartSnapshot.reconstruir(ci.getBase(), capas.subList(0, capas.size() - op.valor)));
+                }
+                case MOVER_AL_FINAL ->
+                    cart.moverAlFinal(op.producto);
+            }
+        }
+        versionOrigen = delta.getHasta();
+        versionLocal = cart.getVersion();
+    }
+
+    /**
+     * Recorre el delta sobre un estado simulado (cantidad y #capas por línea)
+     * sin modificar el carrito. Solo se leen las líneas que nombra el delta.
+     *
+     * @return conflictos encontrados (vacío si se puede aplicar)
+     */
+    private List<String> validar(CartDelta delta) {
+        List<String> conflictos = new ArrayList<>();
+        if (delta.getDesde() != versionOrigen) {
+            conflictos.add("delta desde v" + delta.getDesde() + " pero la réplica está en v" + versionOrigen);
+            return conflictos;
+        }
+        if (cart.getVersion() != versionLocal) {
+            conflictos.add("cambios locales desde el último delta (v" + versionLocal + " -> v"
+                    + cart.getVersion() + ")");
+            return conflictos;
+        }
+        Map<String, int[]> estado = new HashMap<>(); // {cantidad, capas}; null = no está
+        for (CartDelta.Op op : delta.getOps()) {
+            if (!estado.containsKey(op.producto)) { // null cuenta: quitada antes en el delta
+                estado.put(op.producto, leerLinea(op.producto));
+            }
+            int[] linea = estado.get(op.producto);
+            boolean ok = switch (op.tipo) {
+                case AGREGAR_LINEA ->
+                    linea == null;
+                case QUITAR_LINEA, CAMBIAR_CANTIDAD, MOVER_AL_FINAL ->
+                    linea != null && linea[0] == op.esperado;
+                case PUSH_DESCUENTO, POP_DESCUENTOS ->
+                    linea != null && linea[1] == op.esperado;
+            };
+            if (!ok) {
+                conflictos.add(op.toString());
+                continue;
+            }
+            switch (op.tipo) {
+                case AGREGAR_LINEA ->
+                    estado.put(op.producto, new int[]{op.valor, 0});
+                case QUITAR_LINEA ->
+                    estado.put(op.producto, null);
+                case CAMBIAR_CANTIDAD ->
+                    linea[0] = op.valor;
+                case PUSH_DESCUENTO ->
+                    linea[1]++;
+                case POP_DESCUENTOS ->
+                    linea[1] -= op.valor;
+                case MOVER_AL_FINAL -> {
+                    // no cambia cantidad ni capas
+                }
+            }
+        }
+        return conflictos;
+    }
+
+    /**
+     * @return {cantidad, #capas} de la línea local, o null si no está
+     */
+    private int[] leerLinea(String producto) {
+        CartItem ci = cart.buscarLinea(producto);
+        return (ci == null) ? null : new int[]{ci.getQuantity(), CartSnapshot.capas(ci.getActual()).size()};
+    }
+}
@@ -0,0 +1,115 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foto inmutable de un carrito en una versión: por línea, producto base,
+ * cantidad y pila de descuentos (como reglas, de la más interna a la más
+ * externa). Es la entrada para calcular deltas con {@link CartDelta}.
+ */
+final class CartSnapshot {
+
+    /**
+     * Estado de una línea en la foto.
+     */
+    static final class Linea {
+
+        final Component base;
+        final int cantidad;
+        final List<DiscountRule> capas;
+
+        Linea(Component base, int cantidad, List<DiscountRule> capas) {
+            this.base = base;
+            this.cantidad = cantidad;
+            this.capas = Collections.unmodifiableList(capas);
+        }
+
+        /**
+         * Estado actual de una línea del carrito.
+         */
+        static Linea de(CartItem ci) {
+            return new Linea(ci.getBase(), ci.getQuantity(), capas(ci.getActual()));
+        }
+    }
+
+    private final long version;
+    private final Map<String, Linea> lineas;
+
+    private CartSnapshot(long version, Map<String, Linea> lineas) {
+        this.version = version;
+        this.lineas = Collections.unmodifiableMap(lineas);
+    }
+
+    /**
+     * Toma la foto del carrito en su versión actual.
+     *
+     * @throws IllegalStateException si alguna línea tiene un decorador que no
+     * declara su regla (no se puede sincronizar)
+     */
+    static CartSnapshot de(Cart cart) {
+        Map<String, Linea> lineas = new LinkedHashMap<>();
+        for (CartItem ci : cart.getItems()) {
+            lineas.put(clave(ci.getBase().getNombre()), Linea.de(ci));
+        }
+        return new CartSnapshot(cart.getVersion(), lineas);
+    }
+
+    /**
+     * Foto de un carrito vacío (punto de partida de una réplica nueva).
+     */
+    static CartSnapshot vacio() {
+        return new CartSnapshot(0, new LinkedHashMap<>());
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return líneas por nombre normalizado, en el orden del carrito
+     */
+    Map<String, Linea> getLineas() {
+        return lineas;
+    }
+
+    /**
+     * Identidad de una línea: nombre normalizado (igual que Cart).
+     */
+    static String clave(String nombre) {
+        return (nombre == null) ? "" : nombre.trim().toLowerCase();
+    }
+
+    /**
+     * Reglas de la cadena de decoradores, de la más interna a la más externa.
+     */
+    static List<DiscountRule> capas(Component actual) {
+        List<DiscountRule> capas = new ArrayList<>();
+        Component c = actual;
+        while (c instanceof DiscountDecorator d) {
+            DiscountRule r = d.regla();
+            if (r == null) {
+                throw new IllegalStateException("Descuento no sincronizable: " + d.getClass().getSimpleName());
+            }
+            capas.add(r);
+            c = d.componente;
+        }
+        Collections.reverse(capas);
+        return capas;
+    }
+
+    /**
+     * Reconstruye una cadena de decoradores a partir de reglas (de la más
+     * interna a la más externa).
+     */
+    static Component reconstruir(Component base, List<DiscountRule> capas) {
+        Component c = base;
+        for (DiscountRule r : capas) {
+            c = new StrategyDecorator(c, r);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,89 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Origen de deltas incrementales para un carrito. - El carrito anota qué
+ * líneas cambiaron desde el último delta ({@link Cart#tomarCambios}). - Solo
+ * esas líneas se comparan con lo último enviado, así el costo depende del
+ * cambio y no del tamaño del carrito. - El delta es el mismo que daría
+ * {@link CartDelta#entre} con fotos completas.
+ *
+ * Un solo seguidor por carrito. El primer delta parte de un carrito vacío
+ * (versión 0), como una réplica nueva.
+ */
+final class CartTracker {
+
+    private final Cart cart;
+    /** Estado de cada línea según el último delta (lo que ya tiene la réplica). */
+    private final Map<String, CartSnapshot.Linea> enviado = new HashMap<>();
+    private long version;
+
+    /**
+     * @param cart carrito a seguir (no nulo, sin otro seguidor)
+     * @throws IllegalStateException si el carrito ya tenía seguidor
+     */
+    CartTracker(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("cart nulo");
+        }
+        cart.seguirCambios();
+        this.cart = cart;
+    }
+
+    /**
+     * Arma el delta desde el último enviado hasta la versión actual.
+     *
+     * @throws IllegalStateException si alguna línea cambiada tiene un
+     * decorador que no declara su regla (no se puede sincronizar)
+     */
+    CartDelta siguiente() {
+        Cart.Cambios cambios = cart.tomarCambios();
+        Map<String, CartSnapshot.Linea> actuales = new HashMap<>();
+        try {
+            for (String k : cambios.tocadas) {
+                CartItem ci = cart.buscarLinea(k);
+                if (ci != null) {
+                    actuales.put(k, CartSnapshot.Linea.de(ci));
+                }
+            }
+        } catch (RuntimeException e) {
+            cart.devolverCambios(cambios); // el próximo intento vuelve a verlos
+            throw e;
+        }
+        List<CartDelta.Op> ops = new ArrayList<>();
+        // Quitadas y cambiadas en su lugar.
+        for (String k : cambios.tocadas) {
+            CartSnapshot.Linea viejo = enviado.get(k);
+            CartSnapshot.Linea nuevo = actuales.get(k);
+            if (nuevo == null) {
+                if (viejo != null) {
+                    ops.add(new CartDelta.Op(CartDelta.Tipo.QUITAR_LINEA, k, null, viejo.cantidad, 0, null));
+                    enviado.remove(k);
+                }
+            } else if (!cambios.alFinal.contains(k)) {
+                CartDelta.diffLinea(k, viejo, nuevo, ops);
+                enviado.put(k, nuevo);
+            }
+        }
+        // Agregadas y movidas al final, en el orden en que quedaron.
+        for (String k : cambios.alFinal) {
+            CartSnapshot.Linea nuevo = actuales.get(k);
+            if (nuevo == null) {
+                continue; // quitada después: ya se mandó QUITAR (o nunca se envió)
+            }
+            CartSnapshot.Linea viejo = enviado.get(k);
+            if (viejo != null) {
+                ops.add(new CartDelta.Op(CartDelta.Tipo.MOVER_AL_FINAL, k, null, viejo.cantidad, 0, null));
+            }
+            CartDelta.diffLinea(k, viejo, nuevo, ops);
+            enviado.put(k, nuevo);
+        }
+        CartDelta d = new CartDelta(version, cart.getVersion(), ops);
+        version = cart.getVersion();
+        return d;
+    }
+}
@@ -0,0 +1,144 @@
+package com.crnahuas.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Imagen binaria del catálogo para arranque rápido. - Se escribe una vez. - Al
+ * arrancar se lee con una sola lectura del archivo y se recorre el buffer. El
+ * archivo viene de afuera del programa: cantidades y largos se comparan con lo
+ * que queda del buffer antes de usarlos y cada producto pasa por las
+ * validaciones de {@link ProductComponent}; cualquier dato inválido es una
+ * IOException (la app vuelve al catálogo fijo). - Las categorías se guardan en
+ * una tabla aparte, así cada categoría es un único String en memoria.
+ *
+ * Formato: MAGIC, VERSION, #categorías, categorías (UTF-8 con largo),
+ * #productos y por producto: nombre, índice de categoría, precio.
+ */
+final class CatalogImage {
+
+    private static final int MAGIC = 0x43415449; // "CATI"
+    private static final int VERSION = 1;
+
+    private CatalogImage() {
+    }
+
+    /**
+     * Escribe el catálogo en formato binario.
+     *
+     * @param catalog productos base (no nulos)
+     * @param archivo destino (se sobrescribe)
+     * @throws IOException si falla la escritura
+     */
+    static void escribir(Component[] catalog, Path archivo) throws IOException {
+        Map<String, Integer> categorias = new HashMap<>();
+        ByteArrayOutputStream cats = new ByteArrayOutputStream();
+        ByteArrayOutputStream prods = new ByteArrayOutputStream();
+        DataOutputStream c = new DataOutputStream(cats);
+        DataOutputStream p = new DataOutputStream(prods);
+        for (Component comp : catalog) {
+            if (comp instanceof DiscountDecorator) {
+                throw new IllegalArgumentException("Solo productos base");
+            }
+            Integer idx = categorias.get(comp.getCategoria());
+            if (idx == null) {
+                idx = categorias.size();
+                categorias.put(comp.getCategoria(), idx);
+                escribirTexto(c, comp.getCategoria());
+            }
+            escribirTexto(p, comp.getNombre());
+            p.writeInt(idx);
+            p.writeDouble(comp.getPrecio());
+        }
+
+        ByteArrayOutputStream todo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(todo);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(categorias.size());
+        cats.writeTo(out);
+        out.writeInt(catalog.length);
+        prods.writeTo(out);
+        out.flush();
+        Files.write(archivo, todo.toByteArray());
+    }
+
+    /**
+     * Lee el catálogo con una sola lectura del archivo.
+     *
+     * @param archivo imagen generada por {@link #escribir}
+     * @return productos en el mismo orden en que se escribieron
+     * @throws IOException si falla la lectura o el archivo no es una imagen
+     * válida
+     */
+    static Component[] leer(Path archivo) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("formato o version desconocidos");
+            }
+            // Cada categoría ocupa al menos 4 bytes (largo); cada producto, 16.
+            // Una imagen sin productos no sirve: mejor usar el catálogo fijo.
+            String[] categorias = new String[leerCantidad(buf, 4)];
+            for (int i = 0; i < categorias.length; i++) {
+                categorias[i] = leerTexto(buf);
+            }
+            Component[] catalog = new Component[leerCantidad(buf, 16)];
+            for (int i = 0; i < catalog.length; i++) {
+                String nombre = leerTexto(buf);
+                String categoria = categorias[buf.getInt()];
+                double precio = buf.getDouble();
+                if (!Double.isFinite(precio)) {
+                    throw new IOException("Precio invalido en producto " + i);
+                }
+                catalog[i] = new ProductComponent(nombre, categoria, precio);
+            }
+            if (buf.hasRemaining()) {
+                throw new IOException("Bytes sobrantes al final");
+            }
+            return catalog;
+        } catch (IOException e) {
+            throw new IOException("Imagen de catalogo invalida: " + archivo + " (" + e.getMessage() + ")", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Imagen de catalogo invalida: " + archivo + " (" + e + ")", e);
+        }
+    }
+
+    /* --- Helpers internos --- */
+    private static void escribirTexto(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Lee una cantidad de elementos y verifica que sea al menos 1 y que quepa
+     * en lo que queda del buffer.
+     *
+     * @param minBytes bytes mínimos que ocupa cada elemento
+     */
+    private static int leerCantidad(ByteBuffer buf, int minBytes) throws IOException {
+        int n = buf.getInt();
+        if (n <= 0 || n > buf.remaining() / minBytes) {
+            throw new IOException("Cantidad invalida: " + n);
+        }
+        return n;
+    }
+
+    private static String leerTexto(ByteBuffer buf) throws IOException {
+        int n = buf.getInt();
+        if (n < 0 || n > buf.remaining()) {
+            throw new IOException("Largo de texto invalido: " + n);
+        }
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), n, StandardCharsets.UTF_8);
+        buf.position(buf.position() + n);
+        return s;
+    }
+}
@@ -0,0 +1,313 @@
+package com.crnahuas.app;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice de búsqueda en memoria sobre nombres y categorías del catálogo. - Trie
+ * de palabras (nombre normalizado, sin tildes) para búsqueda por prefijo. -
+ * Búsqueda tolerante a errores (distancia de Levenshtein) recorriendo el mismo
+ * trie. - Filtro por categoría con un BitSet por categoría. - Se construye de a
+ * un producto, a medida que se carga el catálogo.
+ *
+ * Los resultados son ids: la posición del producto en el orden en que se agregó
+ * (coincide con el índice del arreglo de catálogo).
+ */
+final class CatalogIndex {
+
+    /**
+     * Nodo del trie con hijos en arreglos paralelos ordenados (menos memoria
+     * que un mapa por nodo).
+     */
+    private static final class Nodo {
+
+        // Arreglos vacíos compartidos: la mayoría de los nodos son hojas o no
+        // terminan palabra, y al crecer siempre se reemplaza el arreglo.
+        static final char[] SIN_LETRAS = new char[0];
+        static final Nodo[] SIN_HIJOS = new Nodo[0];
+        static final int[] SIN_IDS = new int[0];
+
+        char[] letras = SIN_LETRAS;
+        Nodo[] hijos = SIN_HIJOS;
+        int[] ids = SIN_IDS; // productos cuya palabra termina aquí
+        int nIds;
+
+        Nodo hijo(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            return (i >= 0) ? hijos[i] : null;
+        }
+
+        Nodo hijoOCrear(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            if (i >= 0) {
+                return hijos[i];
+            }
+            int pos = -i - 1;
+            char[] nl = new char[letras.length + 1];
+            Nodo[] nh = new Nodo[hijos.length + 1];
+            System.arraycopy(letras, 0, nl, 0, pos);
+            System.arraycopy(hijos, 0, nh, 0, pos);
+            nl[pos] = c;
+            nh[pos] = new Nodo();
+            System.arraycopy(letras, pos, nl, pos + 1, letras.length - pos);
+            System.arraycopy(hijos, pos, nh, pos + 1, hijos.length - pos);
+            letras = nl;
+            hijos = nh;
+            return nh[pos];
+        }
+
+        void agregarId(int id) {
+            if (nIds > 0 && ids[nIds - 1] == id) {
+                return; // misma palabra repetida en el nombre
+            }
+            if (nIds == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2, nIds * 2));
+            }
+            ids[nIds++] = id;
+        }
+    }
+
+    /**
+     * Acumula ids aplicando el filtro de categoría y corta al llegar al
+     * límite (así un prefijo muy común no recorre todo el subárbol).
+     */
+    private static final class Colector {
+
+        // Ids en un arreglo del tamaño del límite (no del catálogo): al
+        // llenarse se ordena y se quitan repetidos; solo para si siguen
+        // siendo {@code ids.length} ids distintos.
+        final int[] ids;
+        final BitSet filtro; // null = sin filtro
+        int n;
+
+        /**
+         * @param limite máximo de resultados (el arreglo se acota al tamaño
+         * del catálogo: no puede haber más ids distintos)
+         */
+        Colector(BitSet filtro, int limite, int productos) {
+            this.filtro = filtro;
+            this.ids = new int[Math.max(Math.min(limite, productos), 1)];
+        }
+
+        boolean lleno() {
+            return n >= ids.length;
+        }
+
+        void agregar(int id) {
+            if (filtro == null || filtro.get(id)) {
+                ids[n++] = id;
+                if (n == ids.length) {
+                    compactar();
+                }
+            }
+        }
+
+        private void compactar() {
+            Arrays.sort(ids, 0, n);
+            int distintos = 0;
+            for (int i = 0; i < n; i++) {
+                if (distintos == 0 || ids[i] != ids[distintos - 1]) {
+                    ids[distintos++] = ids[i];
+                }
+            }
+            n = distintos;
+        }
+
+        List<Integer> resultado() {
+            compactar();
+            List<Integer> r = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                r.add(ids[i]);
+            }
+            return r;
+        }
+    }
+
+    private final Nodo raiz = new Nodo();
+    private final List<Component> productos = new ArrayList<>();
+    private final Map<String, BitSet> porCategoria = new HashMap<>();
+
+    /**
+     * Normaliza: minúsculas y sin tildes.
+     */
+    static String norm(String s) {
+        if (s == null) {
+            return "";
+        }
+        String d = Normalizer.normalize(s.trim().toLowerCase(), Normalizer.Form.NFD);
+        return d.replaceAll("\\p{M}", "");
+    }
+
+    /**
+     * Indexa un producto (incremental).
+     *
+     * @param c producto (no nulo)
+     * @return id asignado
+     */
+    synchronized int agregar(Component c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Component nulo");
+        }
+        int id = productos.size();
+        productos.add(c);
+        for (String palabra : norm(c.getNombre()).split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            Nodo n = raiz;
+            for (int i = 0; i < palabra.length(); i++) {
+                n = n.hijoOCrear(palabra.charAt(i));
+            }
+            n.agregarId(id);
+        }
+        porCategoria.computeIfAbsent(norm(c.getCategoria()), k -> new BitSet()).set(id);
+        return id;
+    }
+
+    /**
+     * @return producto con ese id
+     */
+    synchronized Component get(int id) {
+        return productos.get(id);
+    }
+
+    synchronized int size() {
+        return productos.size();
+    }
+
+    /**
+     * Productos con alguna palabra que empieza con el prefijo.
+     *
+     * @param prefijo texto a buscar (se normaliza)
+     * @param categoria categoría a filtrar (null o vacía = todas)
+     * @param limite máximo de resultados (> 0)
+     * @return ids en orden ascendente (hasta {@code limite} coincidencias)
+     */
+    synchronized List<Integer> buscarPrefijo(String prefijo, String categoria, int limite) {
+        Colector col = colector(categoria, limite);
+        String p = norm(prefijo);
+        Nodo n = raiz;
+        for (int i = 0; i < p.length() && n != null; i++) {
+            n = n.hijo(p.charAt(i));
+        }
+        if (col != null && n != null && !p.isEmpty()) {
+            juntar(n, col);
+        }
+        return (col == null) ? new ArrayList<>() : col.resultado();
+    }
+
+    /**
+     * Productos con alguna palabra a lo más {@code maxErrores} ediciones del
+     * término (o con un prefijo a esa distancia).
+     *
+     * @param termino texto a buscar (se normaliza)
+     * @param maxErrores ediciones permitidas (>= 0; se acota a largo - 1 para
+     * que el término no coincida con cualquier palabra)
+     * @param categoria categoría a filtrar (null o vacía = todas)
+     * @param limite máximo de resultados (> 0)
+     * @return ids en orden ascendente (hasta {@code limite} coincidencias)
+     */
+    synchronized List<Integer> buscarAproximado(String termino, int maxErrores, String categoria, int limite) {
+        if (maxErrores < 0) {
+            throw new IllegalArgumentException("maxErrores >= 0");
+        }
+        Colector col = colector(categoria, limite);
+        String t = norm(termino);
+        if (col != null && !t.isEmpty()) {
+            int max = Math.min(maxErrores, t.length() - 1);
+            int[] fila = new int[t.length() + 1];
+            for (int i = 0; i < fila.length; i++) {
+                fila[i] = i;
+            }
+            for (int k = 0; k < raiz.letras.length && !col.lleno(); k++) {
+                levenshtein(raiz.hijos[k], raiz.letras[k], t, fila, max, col);
+            }
+        }
+        return (col == null) ? new ArrayList<>() : col.resultado();
+    }
+
+    /**
+     * Búsqueda para usuarios: primero por prefijo y, si no hay resultados,
+     * tolerante a errores (ninguno hasta 2 letras, 1 hasta 4, 2 en adelante).
+     * El presupuesto de errores siempre es menor que el largo de la consulta:
+     * si no, una consulta de 1 letra estaría a 1 edición de cualquier palabra.
+     */
+    List<Integer> buscar(String consulta, String categoria, int limite) {
+        List<Integer> r = buscarPrefijo(consulta, categoria, limite);
+        int largo = norm(consulta).length();
+        if (!r.isEmpty() || largo <= 2) {
+            return r;
+        }
+        int errores = largo <= 4 ? 1 : 2;
+        return buscarAproximado(consulta, errores, categoria, limite);
+    }
+
+    /**
+     * @return cantidad de nodos del trie (sin contar la raíz)
+     */
+    synchronized int nodos() {
+        return contar(raiz) - 1;
+    }
+
+    /* --- Helpers internos --- */
+    private static int contar(Nodo n) {
+        int total = 1;
+        for (Nodo h : n.hijos) {
+            total += contar(h);
+        }
+        return total;
+    }
+
+    private void juntar(Nodo n, Colector out) {
+        for (int i = 0; i < n.nIds && !out.lleno(); i++) {
+            out.agregar(n.ids[i]);
+        }
+        for (int k = 0; k < n.hijos.length && !out.lleno(); k++) {
+            juntar(n.hijos[k], out);
+        }
+    }
+
+    /**
+     * Recorre el trie calculando una fila de la matriz de Levenshtein por
+     * nodo; poda las ramas cuyo mínimo ya supera el máximo de errores.
+     */
+    private void levenshtein(Nodo n, char c, String t, int[] anterior, int max, Colector out) {
+        int[] fila = new int[anterior.length];
+        fila[0] = anterior[0] + 1;
+        int minimo = fila[0];
+        for (int j = 1; j < fila.length; j++) {
+            int costo = (t.charAt(j - 1) == c) ? 0 : 1;
+            fila[j] = Math.min(Math.min(fila[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + costo);
+            minimo = Math.min(minimo, fila[j]);
+        }
+        if (fila[fila.length - 1] <= max) {
+            juntar(n, out); // la palabra (o su prefijo) coincide: todo el subárbol sirve
+            return;
+        }
+        if (minimo > max) {
+            return;
+        }
+        for (int k = 0; k < n.letras.length && !out.lleno(); k++) {
+            levenshtein(n.hijos[k], n.letras[k], t, fila, max, out);
+        }
+    }
+
+    /**
+     * @return colector para la categoría, o null si la categoría no existe
+     */
+    private Colector colector(String categoria, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("limite > 0");
+        }
+        if (categoria == null || categoria.isBlank()) {
+            return new Colector(null, limite, productos.size());
+        }
+        BitSet cat = porCategoria.get(norm(categoria));
+        return (cat == null) ? null : new Colector(cat, limite, productos.size());
+    }
+}
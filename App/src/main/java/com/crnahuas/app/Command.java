@@ -12,24 +12,116 @@ public interface Command {
     void ejecutar();
 
     String nombre();
+
+    /**
+     * Clave de idempotencia enviada por el cliente. Dos comandos con la misma
+     * clave se consideran el mismo pedido (reintento).
+     *
+     * @return clave, o null si el comando no la tiene
+     */
+    default String claveIdempotencia() {
+        return null;
+    }
 }
 
 /**
- * Invoker: acumula y ejecuta comandos en orden FIFO.
+ * Invoker: acumula y ejecuta comandos en orden FIFO. Los comandos con clave de
+ * idempotencia repetida (reintentos del cliente) se descartan al agregarlos.
  */
 class Invoker {
 
     private final List<Command> cola = new ArrayList<>();
+    private DedupWindow dedup;
+
+    /**
+     * Invoker con deduplicación por defecto (4096 claves, 10 minutos). La
+     * ventana se crea recién con el primer comando que trae clave.
+     */
+    Invoker() {
+    }
+
+    /**
+     * @param dedup ventana de deduplicación (no nula; puede compartirse entre
+     * invokers)
+     */
+    Invoker(DedupWindow dedup) {
+        if (dedup == null) {
+            throw new IllegalArgumentException("dedup nulo");
+        }
+        this.dedup = dedup;
+    }
 
-    void agregar(Command c) {
+    /**
+     * @return true si se encoló; false si era un duplicado
+     */
+    boolean agregar(Command c) {
+        String clave = c.claveIdempotencia();
+        if (clave != null) {
+            if (dedup == null) {
+                dedup = new DedupWindow(4096, 10 * 60 * 1000L);
+            }
+            if (!dedup.registrar(clave)) {
+                return false;
+            }
+        }
         cola.add(c);
+        return true;
     }
 
     void ejecutarTodo() {
-        for (Command c : cola) {
-            c.ejecutar();
+        int i = 0;
+        try {
+            for (; i < cola.size(); i++) {
+                cola.get(i).ejecutar();
+            }
+        } catch (RuntimeException e) {
+            // El comando que falló y los que no alcanzaron a correr pueden reintentarse.
+            for (; dedup != null && i < cola.size(); i++) {
+                dedup.olvidar(cola.get(i).claveIdempotencia());
+            }
+            throw e;
+        } finally {
+            cola.clear(); // si un comando falla, no se reintenta en la próxima ejecución
         }
-        cola.clear();
+    }
+}
+
+/**
+ * Envuelve un comando con una clave de idempotencia (Decorator sobre Command).
+ */
+class IdempotentCommand implements Command {
+
+    private final String clave;
+    private final Command comando;
+
+    /**
+     * @param clave clave de idempotencia del cliente (no vacía)
+     * @param comando comando a ejecutar (no nulo)
+     */
+    IdempotentCommand(String clave, Command comando) {
+        if (clave == null || clave.isBlank()) {
+            throw new IllegalArgumentException("Clave requerida");
+        }
+        if (comando == null) {
+            throw new IllegalArgumentException("comando nulo");
+        }
+        this.clave = clave;
+        this.comando = comando;
+    }
+
+    @Override
+    public void ejecutar() {
+        comando.ejecutar();
+    }
+
+    @Override
+    public String nombre() {
+        return comando.nombre() + " [" + clave + "]";
+    }
+
+    @Override
+    public String claveIdempotencia() {
+        return clave;
     }
 }
 
@@ -39,17 +131,45 @@ class Invoker {
 class CartContext {
 
     private final Cart cart;
+    private final CartEventRing eventos;
 
     CartContext(Cart cart) {
+        this(cart, null);
+    }
+
+    /**
+     * @param cart carrito (no nulo)
+     * @param eventos buffer donde publicar los cambios (null = sin eventos)
+     */
+    CartContext(Cart cart, CartEventRing eventos) {
         if (cart == null) {
             throw new IllegalArgumentException("cart nulo");
         }
         this.cart = cart;
+        this.eventos = eventos;
     }
 
     Cart getCart() {
         return cart;
     }
+
+    /**
+     * Publica un cambio del carrito (no hace nada si no hay buffer).
+     */
+    void publicar(CartEventType tipo, String producto, int linea, int cantidad, String detalle) {
+        if (eventos != null) {
+            eventos.publicar(CartEvent.of(tipo, producto, linea, cantidad, detalle));
+        }
+    }
+
+    /**
+     * Nombre del producto en la línea indicada (1-based) o null si no existe.
+     */
+    String productoEn(int oneBasedIndex) {
+        List<CartItem> items = cart.getItems();
+        int idx = oneBasedIndex - 1;
+        return (idx < 0 || idx >= items.size()) ? null : items.get(idx).getBase().getNombre();
+    }
 }
 
 /* ===================== Comandos de CARRITO ===================== */
@@ -71,6 +191,7 @@ class AddProductToCartCommand implements Command {
     @Override
     public void ejecutar() {
         ctx.getCart().add(base, qty);
+        ctx.publicar(CartEventType.PRODUCTO_AGREGADO, base.getNombre(), 0, qty, "");
     }
 
     @Override
@@ -92,7 +213,10 @@ class RemoveProductAtIndexCommand implements Command {
 
     @Override
     public void ejecutar() {
-        ctx.getCart().removeAtIndex(index1);
+        String producto = ctx.productoEn(index1);
+        if (ctx.getCart().removeAtIndex(index1)) {
+            ctx.publicar(CartEventType.LINEA_ELIMINADA, producto, index1, 0, "");
+        }
     }
 
     @Override
@@ -115,7 +239,10 @@ class DecreaseProductQtyAtIndexCommand implements Command {
 
     @Override
     public void ejecutar() {
-        ctx.getCart().decreaseAtIndex(index1, amount);
+        String producto = ctx.productoEn(index1);
+        if (ctx.getCart().decreaseAtIndex(index1, amount)) {
+            ctx.publicar(CartEventType.CANTIDAD_DISMINUIDA, producto, index1, amount, "");
+        }
     }
 
     @Override
@@ -138,6 +265,7 @@ class ApplyTenPercentToAllCommand implements Command {
         for (CartItem ci : ctx.getCart().getItems()) {
             ci.setActual(new TenPercentDecorator(ci.getActual())); // se apila sobre lo actual
         }
+        ctx.publicar(CartEventType.DESCUENTO_APLICADO, "", 0, 0, nombre());
     }
 
     @Override
@@ -161,6 +289,7 @@ class ApplyCategoryTwentyToAllCommand implements Command {
         for (CartItem ci : ctx.getCart().getItems()) {
             ci.setActual(new CategoryTwentyDecorator(ci.getActual(), categoria)); // se apila
         }
+        ctx.publicar(CartEventType.DESCUENTO_APLICADO, "", 0, 0, nombre());
     }
 
     @Override
@@ -184,6 +313,7 @@ class ApplyFlatAmountToAllCommand implements Command {
         for (CartItem ci : ctx.getCart().getItems()) {
             ci.setActual(new FlatAmountDecorator(ci.getActual(), monto)); // se apila
         }
+        ctx.publicar(CartEventType.DESCUENTO_APLICADO, "", 0, 0, nombre());
     }
 
     @Override
@@ -192,6 +322,43 @@ class ApplyFlatAmountToAllCommand implements Command {
     }
 }
 
+/**
+ * Aplica a todas las líneas una estrategia del SPI de descuentos (se apila).
+ * Sirve para cualquier promoción nueva sin escribir otro Command.
+ */
+class ApplyStrategyToAllCommand implements Command {
+
+    private final CartContext ctx;
+    private final DiscountStrategy estrategia;
+    private final DiscountRule regla;
+
+    /**
+     * @throws IllegalArgumentException si el parámetro no es válido para la
+     * estrategia
+     */
+    ApplyStrategyToAllCommand(CartContext ctx, DiscountStrategy estrategia, String parametro) {
+        if (estrategia == null) {
+            throw new IllegalArgumentException("estrategia nula");
+        }
+        this.ctx = ctx;
+        this.estrategia = estrategia;
+        this.regla = estrategia.regla(parametro); // se valida al crear el comando
+    }
+
+    @Override
+    public void ejecutar() {
+        for (CartItem ci : ctx.getCart().getItems()) {
+            ci.setActual(new StrategyDecorator(ci.getActual(), regla)); // se apila
+        }
+        ctx.publicar(CartEventType.DESCUENTO_APLICADO, "", 0, 0, nombre());
+    }
+
+    @Override
+    public String nombre() {
+        return estrategia.id() + " " + regla;
+    }
+}
+
 /* --- NUEVO: reset de descuentos vía comando (consistencia con Command) --- */
 class ResetDiscountsAllCommand implements Command {
 
@@ -204,6 +371,7 @@ class ResetDiscountsAllCommand implements Command {
     @Override
     public void ejecutar() {
         ctx.getCart().resetAllDecorators();
+        ctx.publicar(CartEventType.DESCUENTOS_LIMPIADOS, "", 0, 0, nombre());
     }
 
     @Override
@@ -0,0 +1,222 @@
+package com.crnahuas.app;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conjunto de deduplicación acotado y con ventana de tiempo para claves de
+ * idempotencia. - Guarda un hash de 64 bits por clave (no el String). - Las
+ * claves se reparten en segmentos; cada uno tiene una tabla abierta de longs
+ * (hash, instante) y un anillo con sus últimas claves: al dar la vuelta, la
+ * más antigua se olvida, así la memoria no crece. - Una clave vista hace menos
+ * de la ventana es duplicada; pasada la ventana vuelve a aceptarse. - Registrar
+ * es O(1), sin boxing ni objetos por clave, y solo bloquea su segmento.
+ */
+final class DedupWindow {
+
+    private static final int MAX_SEGMENTOS = 16;
+
+    /**
+     * Segmento: tabla de direccionamiento abierto (sondeo lineal, hash 0 =
+     * libre) y anillo FIFO con el orden de registro.
+     */
+    private static final class Segmento {
+
+        final long[] hashes;
+        final long[] instantes;
+        final int mascaraTabla;
+        final long[] anilloHashes;
+        final long[] anilloInstantes;
+        int cursor;
+        int n;
+
+        /**
+         * @param capacidad claves recordadas (potencia de 2); la tabla tiene
+         * el doble para que el sondeo sea corto
+         */
+        Segmento(int capacidad) {
+            hashes = new long[capacidad * 2];
+            instantes = new long[capacidad * 2];
+            mascaraTabla = capacidad * 2 - 1;
+            anilloHashes = new long[capacidad];
+            anilloInstantes = new long[capacidad];
+        }
+
+        /**
+         * @return posición de la clave en la tabla, o -1 si no está
+         */
+        int buscar(long h) {
+            for (int i = indice(h);; i = (i + 1) & mascaraTabla) {
+                if (hashes[i] == h) {
+                    return i;
+                }
+                if (hashes[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        int indice(long h) {
+            return (int) (mezclar(h) >>> 28) & mascaraTabla;
+        }
+
+        void insertar(long h, long instante) {
+            int i = indice(h);
+            while (hashes[i] != 0) {
+                i = (i + 1) & mascaraTabla;
+            }
+            hashes[i] = h;
+            instantes[i] = instante;
+            n++;
+        }
+
+        /**
+         * Quita la entrada en {@code i} y corre hacia atrás las que la
+         * siguen en el mismo grupo (sin marcas de borrado).
+         */
+        void quitar(int i) {
+            hashes[i] = 0;
+            n--;
+            for (int j = (i + 1) & mascaraTabla; hashes[j] != 0; j = (j + 1) & mascaraTabla) {
+                int ideal = indice(hashes[j]);
+                // La entrada en j puede ocupar el hueco i si su posición ideal
+                // no está en el tramo cíclico (i, j].
+                if (((j - ideal) & mascaraTabla) >= ((j - i) & mascaraTabla)) {
+                    hashes[i] = hashes[j];
+                    instantes[i] = instantes[j];
+                    hashes[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        /**
+         * Anota la clave en el anillo y olvida la más antigua si estaba
+         * llena (solo si no se renovó después).
+         */
+        void recordar(long h, long instante) {
+            int slot = cursor;
+            cursor = (cursor + 1) % anilloHashes.length;
+            long vieja = anilloHashes[slot];
+            if (vieja != 0) {
+                int i = buscar(vieja);
+                if (i >= 0 && instantes[i] == anilloInstantes[slot]) {
+                    quitar(i);
+                }
+            }
+            anilloHashes[slot] = h;
+            anilloInstantes[slot] = instante;
+        }
+    }
+
+    private final long ventanaNanos;
+    private final Segmento[] segmentos;
+
+    /**
+     * @param capacidad claves recordadas como máximo (potencia de 2, > 0; se
+     * reparten en partes iguales entre los segmentos)
+     * @param ventanaMillis tiempo durante el cual una clave repetida se
+     * descarta (> 0)
+     */
+    DedupWindow(int capacidad, long ventanaMillis) {
+        if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("capacidad debe ser potencia de 2");
+        }
+        if (ventanaMillis <= 0) {
+            throw new IllegalArgumentException("ventana > 0");
+        }
+        this.ventanaNanos = ventanaMillis * 1_000_000L;
+        int n = Math.min(MAX_SEGMENTOS, capacidad);
+        this.segmentos = new Segmento[n];
+        for (int i = 0; i < n; i++) {
+            segmentos[i] = new Segmento(capacidad / n);
+        }
+    }
+
+    /**
+     * Hash FNV-1a de 64 bits sobre los bytes UTF-8 de la clave (nunca 0: el 0
+     * marca un lugar libre).
+     */
+    static long hash(String clave) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : clave.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return (h == 0) ? 1 : h;
+    }
+
+    /**
+     * Reparte los bits del hash (FNV casi no cambia los bits altos entre
+     * claves que difieren en el último carácter).
+     */
+    private static long mezclar(long h) {
+        return h * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * El segmento sale de los 4 bits más altos; la posición en la tabla, de
+     * los bits 28 en adelante (no se solapan).
+     */
+    private Segmento segmento(long h) {
+        return segmentos[(int) (mezclar(h) >>> 60) & (segmentos.length - 1)];
+    }
+
+    /**
+     * Registra una clave.
+     *
+     * @param clave clave de idempotencia (no vacía)
+     * @return true si es nueva (o su registro anterior venció); false si es un
+     * duplicado dentro de la ventana
+     */
+    boolean registrar(String clave) {
+        if (clave == null || clave.isBlank()) {
+            throw new IllegalArgumentException("Clave requerida");
+        }
+        long h = hash(clave);
+        long ahora = System.nanoTime();
+        Segmento s = segmento(h);
+        synchronized (s) {
+            int i = s.buscar(h);
+            if (i >= 0) {
+                if (ahora - s.instantes[i] < ventanaNanos) {
+                    return false;
+                }
+                s.instantes[i] = ahora; // venció: se renueva
+            } else {
+                s.insertar(h, ahora);
+            }
+            s.recordar(h, ahora);
+            return true;
+        }
+    }
+
+    /**
+     * Olvida una clave (p. ej. si el comando falló y el cliente debe poder
+     * reintentar).
+     */
+    void olvidar(String clave) {
+        if (clave != null && !clave.isBlank()) {
+            long h = hash(clave);
+            Segmento s = segmento(h);
+            synchronized (s) {
+                int i = s.buscar(h);
+                if (i >= 0) {
+                    s.quitar(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return claves recordadas actualmente (<= capacidad)
+     */
+    int size() {
+        int total = 0;
+        for (Segmento s : segmentos) {
+            synchronized (s) {
+                total += s.n;
+            }
+        }
+        return total;
+    }
+}
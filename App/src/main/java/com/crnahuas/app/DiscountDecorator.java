@@ -32,6 +32,16 @@ public abstract class DiscountDecorator implements Component {
     public double getPrecio() {
         return componente.getPrecio();
     } // por defecto, pasa-through
+
+    /**
+     * Regla equivalente a esta capa, para precalcular el plan de apilamiento.
+     *
+     * @return regla declarada, o null si la capa no se puede expresar como
+     * regla (el plan leerá getPrecio() de la cadena)
+     */
+    DiscountRule regla() {
+        return null;
+    }
 }
 
 /**
@@ -47,6 +57,11 @@ class TenPercentDecorator extends DiscountDecorator {
     public double getPrecio() {
         return componente.getPrecio() * 0.90;
     }
+
+    @Override
+    DiscountRule regla() {
+        return DiscountRule.multiplicativo(0.90);
+    }
 }
 
 /**
@@ -73,6 +88,11 @@ class CategoryTwentyDecorator extends DiscountDecorator {
         double base = componente.getPrecio();
         return componente.getCategoria().equalsIgnoreCase(categoriaObjetivo) ? base * 0.80 : base;
     }
+
+    @Override
+    DiscountRule regla() {
+        return DiscountRule.condicional(categoriaObjetivo, 0.80);
+    }
 }
 
 /**
@@ -99,4 +119,40 @@ class FlatAmountDecorator extends DiscountDecorator {
         double r = componente.getPrecio() - monto;
         return (r < 0) ? 0 : r;
     }
+
+    @Override
+    DiscountRule regla() {
+        return DiscountRule.aditivoConPiso(monto);
+    }
+}
+
+/**
+ * Decorador genérico: aplica la regla de una estrategia del SPI
+ * ({@link DiscountStrategy}), sin necesidad de una subclase por promoción.
+ */
+class StrategyDecorator extends DiscountDecorator {
+
+    private final DiscountRule regla;
+
+    /**
+     * @param c componente a decorar
+     * @param regla regla a aplicar (no nula)
+     */
+    public StrategyDecorator(Component c, DiscountRule regla) {
+        super(c);
+        if (regla == null) {
+            throw new IllegalArgumentException("Regla requerida");
+        }
+        this.regla = regla;
+    }
+
+    @Override
+    public double getPrecio() {
+        return regla.aplicar(componente.getPrecio(), componente.getCategoria());
+    }
+
+    @Override
+    DiscountRule regla() {
+        return regla;
+    }
 }
@@ -40,6 +40,21 @@ public final class DiscountManager {
         return round2(comp.getPrecio());
     }
 
+    /**
+     * Evalúa un plan de apilamiento precalculado y lo normaliza a 2 decimales
+     * (capas en el orden canónico del plan, ver {@link StackingPlan}).
+     *
+     * @param plan plan de la línea
+     * @return precio con 2 decimales
+     * @throws IllegalArgumentException si plan es nulo
+     */
+    double calcularPrecio(StackingPlan plan) {
+        if (plan == null) {
+            throw new IllegalArgumentException("Plan nulo");
+        }
+        return round2(plan.evaluar());
+    }
+
     /**
      * Redondeo simple a 2 decimales (nivel estudiante).
      */
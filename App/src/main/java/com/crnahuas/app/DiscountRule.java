@@ -0,0 +1,125 @@
+package com.crnahuas.app;
+
+import java.util.Objects;
+
+/**
+ * Regla de descuento declarada por una estrategia. Además del valor, indica su
+ * álgebra para que el motor pueda combinar capas al precalcular el plan de
+ * apilamiento ({@link StackingPlan}).
+ */
+public final class DiscountRule {
+
+    /**
+     * Cómo actúa la regla sobre el precio.
+     */
+    public enum Algebra {
+        /** precio * factor (factor en [0, 1]). */
+        MULTIPLICATIVO,
+        /** max(precio - monto, 0). */
+        ADITIVO_CON_PISO,
+        /** precio * factor solo si la categoría coincide (case-insensitive). */
+        CONDICIONAL
+    }
+
+    private final Algebra algebra;
+    private final double valor;
+    private final String categoria;
+
+    private DiscountRule(Algebra algebra, double valor, String categoria) {
+        this.algebra = algebra;
+        this.valor = valor;
+        this.categoria = categoria;
+    }
+
+    /**
+     * @param factor factor a multiplicar, entre 0 y 1
+     */
+    public static DiscountRule multiplicativo(double factor) {
+        if (factor < 0 || factor > 1) {
+            throw new IllegalArgumentException("Factor invalido");
+        }
+        return new DiscountRule(Algebra.MULTIPLICATIVO, factor, null);
+    }
+
+    /**
+     * @param monto monto a restar (>= 0)
+     */
+    public static DiscountRule aditivoConPiso(double monto) {
+        if (monto < 0) {
+            throw new IllegalArgumentException("Monto invalido");
+        }
+        return new DiscountRule(Algebra.ADITIVO_CON_PISO, monto, null);
+    }
+
+    /**
+     * @param categoria categoría elegible (no vacía)
+     * @param factor factor a multiplicar si coincide, entre 0 y 1
+     */
+    public static DiscountRule condicional(String categoria, double factor) {
+        if (categoria == null || categoria.isBlank()) {
+            throw new IllegalArgumentException("Categoria objetivo requerida");
+        }
+        if (factor < 0 || factor > 1) {
+            throw new IllegalArgumentException("Factor invalido");
+        }
+        return new DiscountRule(Algebra.CONDICIONAL, factor, categoria);
+    }
+
+    public Algebra getAlgebra() {
+        return algebra;
+    }
+
+    /**
+     * @return factor (multiplicativo/condicional) o monto (aditivo)
+     */
+    public double getValor() {
+        return valor;
+    }
+
+    /**
+     * @return categoría objetivo (solo condicional; null en otro caso)
+     */
+    public String getCategoria() {
+        return categoria;
+    }
+
+    /**
+     * Aplica la regla a un precio (evaluación capa a capa, sin plan).
+     *
+     * @param precio precio de entrada
+     * @param categoriaProducto categoría del producto
+     * @return precio resultante
+     */
+    public double aplicar(double precio, String categoriaProducto) {
+        return switch (algebra) {
+            case MULTIPLICATIVO ->
+                precio * valor;
+            case ADITIVO_CON_PISO ->
+                (precio - valor < 0) ? 0 : precio - valor;
+            case CONDICIONAL ->
+                categoriaProducto.equalsIgnoreCase(categoria) ? precio * valor : precio;
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DiscountRule r)) {
+            return false;
+        }
+        return algebra == r.algebra && Double.compare(valor, r.valor) == 0
+                && Objects.equals(categoria, r.categoria);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algebra, valor, categoria);
+    }
+
+    @Override
+    public String toString() {
+        return algebra + "(" + valor + (categoria == null ? "" : ", " + categoria) + ")";
+    }
+}
@@ -0,0 +1,126 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registro de estrategias de descuento descubiertas con
+ * {@link ServiceLoader}. Incluye las promociones de siempre (10%, 20% por
+ * categoría y monto fijo) como estrategias integradas.
+ */
+public final class DiscountStrategies {
+
+    private static volatile Map<String, DiscountStrategy> registro;
+
+    private DiscountStrategies() {
+    }
+
+    /**
+     * Carga (una sola vez) las estrategias disponibles en el classpath.
+     */
+    private static Map<String, DiscountStrategy> registro() {
+        Map<String, DiscountStrategy> r = registro;
+        if (r == null) {
+            synchronized (DiscountStrategies.class) {
+                r = registro;
+                if (r == null) {
+                    r = new LinkedHashMap<>();
+                    for (DiscountStrategy s : ServiceLoader.load(DiscountStrategy.class)) {
+                        if (r.putIfAbsent(s.id(), s) != null) {
+                            System.err.println("Estrategia duplicada ignorada: " + s.id());
+                        }
+                    }
+                    registro = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return estrategias en orden de descubrimiento
+     */
+    public static List<DiscountStrategy> todas() {
+        return Collections.unmodifiableList(new ArrayList<>(registro().values()));
+    }
+
+    /**
+     * @param id identificador de la estrategia
+     * @return la estrategia, o null si no existe
+     */
+    public static DiscountStrategy get(String id) {
+        return (id == null) ? null : registro().get(id.trim());
+    }
+
+    /* ===================== Estrategias integradas ===================== */
+    /**
+     * 10% OFF a cualquier producto.
+     */
+    public static final class TenPercent implements DiscountStrategy {
+
+        @Override
+        public String id() {
+            return "10pct";
+        }
+
+        @Override
+        public String descripcion() {
+            return "10% a todo (sin parámetro)";
+        }
+
+        @Override
+        public DiscountRule regla(String parametro) {
+            return DiscountRule.multiplicativo(0.90);
+        }
+    }
+
+    /**
+     * 20% OFF si la categoría coincide.
+     */
+    public static final class CategoryTwenty implements DiscountStrategy {
+
+        @Override
+        public String id() {
+            return "cat20";
+        }
+
+        @Override
+        public String descripcion() {
+            return "20% por categoría (parámetro: categoría)";
+        }
+
+        @Override
+        public DiscountRule regla(String parametro) {
+            return DiscountRule.condicional(parametro, 0.80);
+        }
+    }
+
+    /**
+     * Monto fijo por unidad (nunca deja negativo).
+     */
+    public static final class FlatAmount implements DiscountStrategy {
+
+        @Override
+        public String id() {
+            return "monto";
+        }
+
+        @Override
+        public String descripcion() {
+            return "Monto fijo por línea (parámetro: monto)";
+        }
+
+        @Override
+        public DiscountRule regla(String parametro) {
+            try {
+                return DiscountRule.aditivoConPiso(Double.parseDouble(parametro.trim()));
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new IllegalArgumentException("Monto invalido");
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.crnahuas.app;
+
+/**
+ * SPI de estrategias de descuento. Las implementaciones se descubren con
+ * {@link java.util.ServiceLoader} (archivo
+ * META-INF/services/com.crnahuas.app.DiscountStrategy), así una promoción
+ * nueva no necesita otro Decorator ni otro Command.
+ */
+public interface DiscountStrategy {
+
+    /**
+     * @return identificador único (p. ej. "10pct")
+     */
+    String id();
+
+    /**
+     * @return texto para mostrar en el menú
+     */
+    String descripcion();
+
+    /**
+     * Construye la regla a aplicar.
+     *
+     * @param parametro parámetro ingresado por el usuario (puede ser vacío si
+     * la estrategia no lo usa)
+     * @return regla con su álgebra declarada
+     * @throws IllegalArgumentException si el parámetro no es válido
+     */
+    DiscountRule regla(String parametro);
+}
@@ -0,0 +1,70 @@
+package com.crnahuas.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink local en archivo: agrega cada lote de eventos (una línea por evento) y
+ * permite reproducirlos después en el mismo orden.
+ */
+final class FileCartEventSink implements CartEventListener, AutoCloseable {
+
+    private final BufferedWriter out;
+
+    /**
+     * @param archivo archivo destino (se crea o se agrega al final)
+     * @throws IOException si no se puede abrir
+     */
+    FileCartEventSink(Path archivo) throws IOException {
+        if (archivo == null) {
+            throw new IllegalArgumentException("archivo nulo");
+        }
+        this.out = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void onLote(List<CartEvent> lote) {
+        try {
+            for (CartEvent e : lote) {
+                out.write(e.toLinea());
+                out.newLine();
+            }
+            out.flush(); // un flush por lote, no por evento
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Lee todos los eventos guardados en el archivo, en orden.
+     *
+     * @param archivo archivo generado por este sink
+     * @return eventos (lista vacía si el archivo no existe)
+     * @throws IOException si falla la lectura
+     */
+    static List<CartEvent> reproducir(Path archivo) throws IOException {
+        List<CartEvent> eventos = new ArrayList<>();
+        if (!Files.exists(archivo)) {
+            return eventos;
+        }
+        for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+            if (!linea.isBlank()) {
+                eventos.add(CartEvent.fromLinea(linea));
+            }
+        }
+        return eventos;
+    }
+}
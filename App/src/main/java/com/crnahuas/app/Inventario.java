@@ -0,0 +1,172 @@
+package com.crnahuas.app;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Libro de stock en memoria, por producto (nombre normalizado). - El stock de
+ * cada producto se reparte en franjas (AtomicLong) para que muchos hilos
+ * reservando el mismo producto "caliente" no compitan por un único contador. -
+ * Reservar y liberar son atómicos por CAS: una franja nunca baja de 0, así que
+ * no hay sobreventa. - Si ninguna franja alcanza sola, la reserva junta de
+ * varias bajo el lock del producto: ese camino no falla mientras el stock total
+ * alcance (ver el arnés InventarioStress en las fuentes de prueba).
+ */
+final class Inventario {
+
+    /**
+     * Franjas por producto (potencia de 2).
+     */
+    private static final int FRANJAS = 8;
+    /**
+     * Separación entre franjas dentro del arreglo (evita false sharing: 8 longs =
+     * 64 bytes).
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * Stock de un producto: franjas + lock del camino lento.
+     */
+    private static final class Sku {
+
+        final AtomicLongArray franjas = new AtomicLongArray(FRANJAS * PADDING);
+        final ReentrantLock lock = new ReentrantLock();
+    }
+
+    private final ConcurrentHashMap<String, Sku> stock = new ConcurrentHashMap<>();
+
+    private static String norm(String s) {
+        return (s == null) ? "" : s.trim().toLowerCase();
+    }
+
+    private static int franjaDelHilo() {
+        return ThreadLocalRandom.current().nextInt(FRANJAS);
+    }
+
+    /**
+     * Registra (o suma) unidades disponibles de un producto.
+     *
+     * @param nombre nombre del producto (no vacío)
+     * @param unidades unidades a sumar (>= 0)
+     */
+    void reponer(String nombre, long unidades) {
+        if (nombre == null || nombre.isBlank()) {
+            throw new IllegalArgumentException("Nombre requerido");
+        }
+        if (unidades < 0) {
+            throw new IllegalArgumentException("unidades >= 0");
+        }
+        AtomicLongArray f = stock.computeIfAbsent(norm(nombre), k -> new Sku()).franjas;
+        // Reparte parejo entre franjas; el resto va a la primera.
+        long parte = unidades / FRANJAS;
+        for (int i = 0; i < FRANJAS; i++) {
+            f.addAndGet(i * PADDING, parte);
+        }
+        f.addAndGet(0, unidades - parte * FRANJAS);
+    }
+
+    /**
+     * Reserva unidades de forma atómica (todo o nada). Solo devuelve false si el
+     * stock total del producto no alcanza.
+     *
+     * @return true si se reservó; false si no hay stock suficiente o el
+     * producto no está registrado
+     */
+    boolean reservar(String nombre, int qty) {
+        if (qty <= 0) {
+            throw new IllegalArgumentException("qty > 0");
+        }
+        Sku sku = stock.get(norm(nombre));
+        if (sku == null) {
+            return false;
+        }
+        AtomicLongArray f = sku.franjas;
+        // Camino rápido: una sola franja alcanza.
+        int inicio = franjaDelHilo();
+        for (int k = 0; k < FRANJAS; k++) {
+            int i = ((inicio + k) & (FRANJAS - 1)) * PADDING;
+            long v;
+            while ((v = f.get(i)) >= qty) {
+                if (f.compareAndSet(i, v, v - qty)) {
+                    return true;
+                }
+            }
+        }
+        // Camino lento: con el lock del producto, ninguna otra reserva lenta
+        // retiene unidades a medias. Se junta de varias franjas repitiendo
+        // vueltas mientras alguna entregue algo (p. ej. una liberación en una
+        // franja ya recorrida); solo si una vuelta completa no obtiene nada y
+        // aún faltan, el stock realmente no alcanza.
+        sku.lock.lock();
+        try {
+            long faltan = qty;
+            long[] tomado = new long[FRANJAS];
+            boolean avanzo = true;
+            while (faltan > 0 && avanzo) {
+                avanzo = false;
+                for (int k = 0; k < FRANJAS && faltan > 0; k++) {
+                    int i = k * PADDING;
+                    long v;
+                    while ((v = f.get(i)) > 0) {
+                        long t = Math.min(v, faltan);
+                        if (f.compareAndSet(i, v, v - t)) {
+                            tomado[k] += t;
+                            faltan -= t;
+                            avanzo = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (faltan == 0) {
+                return true;
+            }
+            for (int k = 0; k < FRANJAS; k++) {
+                if (tomado[k] > 0) {
+                    f.addAndGet(k * PADDING, tomado[k]);
+                }
+            }
+            return false;
+        } finally {
+            sku.lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve unidades reservadas al stock (p. ej. al quitar del carrito).
+     */
+    void liberar(String nombre, int qty) {
+        if (qty <= 0) {
+            return;
+        }
+        Sku sku = stock.get(norm(nombre));
+        if (sku != null) {
+            sku.franjas.addAndGet(franjaDelHilo() * PADDING, qty);
+        }
+    }
+
+    /**
+     * Lee bajo el lock del producto, así no ve unidades retenidas por una
+     * reserva lenta en curso.
+     *
+     * @return unidades disponibles (instantánea; puede cambiar en paralelo)
+     */
+    long disponible(String nombre) {
+        Sku sku = stock.get(norm(nombre));
+        if (sku == null) {
+            return 0;
+        }
+        sku.lock.lock();
+        try {
+            long sum = 0;
+            for (int k = 0; k < FRANJAS; k++) {
+                sum += sku.franjas.get(k * PADDING);
+            }
+            return sum;
+        } finally {
+            sku.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.crnahuas.app;
+
+import java.util.List;
+
+/**
+ * Vista paginada sobre una lista existente (catálogo o líneas del carrito). No
+ * copia datos: cada página es un {@link List#subList} de la fuente, así que el
+ * costo de mostrar una página depende del tamaño de página y no del total.
+ *
+ * @param <T> tipo de elemento
+ */
+final class PagedView<T> {
+
+    private final List<T> fuente;
+    private final int tamanoPagina;
+
+    /**
+     * @param fuente lista a recorrer (no nula; se lee en vivo, sin copiar)
+     * @param tamanoPagina elementos por página (> 0)
+     */
+    PagedView(List<T> fuente, int tamanoPagina) {
+        if (fuente == null) {
+            throw new IllegalArgumentException("fuente nula");
+        }
+        if (tamanoPagina <= 0) {
+            throw new IllegalArgumentException("tamanoPagina > 0");
+        }
+        this.fuente = fuente;
+        this.tamanoPagina = tamanoPagina;
+    }
+
+    /**
+     * @return cantidad de páginas (0 si la fuente está vacía)
+     */
+    int totalPaginas() {
+        return (fuente.size() + tamanoPagina - 1) / tamanoPagina;
+    }
+
+    /**
+     * @param numero página (1-based)
+     * @return índice (0-based) del primer elemento de la página
+     */
+    int desplazamiento(int numero) {
+        return (numero - 1) * tamanoPagina;
+    }
+
+    /**
+     * Página solicitada como vista (sin copia) de la fuente.
+     *
+     * @param numero página (1-based, entre 1 y {@link #totalPaginas()})
+     * @return sublista de solo lectura si la fuente lo es
+     */
+    List<T> pagina(int numero) {
+        if (numero < 1 || numero > totalPaginas()) {
+            throw new IllegalArgumentException("Pagina invalida");
+        }
+        int desde = desplazamiento(numero);
+        return fuente.subList(desde, Math.min(desde + tamanoPagina, fuente.size()));
+    }
+}
+
+/**
+ * Fila del carrito para mostrar. El precio con descuento se calcula recién la
+ * primera vez que se pide (y se recuerda), no al armar la página.
+ */
+final class CartRow {
+
+    private final int numero;
+    private final CartItem item;
+    private double precioDescuento = Double.NaN;
+
+    /**
+     * @param numero número de línea (1-based, columna #)
+     * @param item línea del carrito (no nula)
+     */
+    CartRow(int numero, CartItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException("item nulo");
+        }
+        this.numero = numero;
+        this.item = item;
+    }
+
+    int getNumero() {
+        return numero;
+    }
+
+    Component getBase() {
+        return item.getBase();
+    }
+
+    int getQuantity() {
+        return item.getQuantity();
+    }
+
+    /**
+     * @return precio unitario con descuentos (2 decimales), calculado a demanda
+     */
+    double getPrecioDescuento() {
+        if (Double.isNaN(precioDescuento)) {
+            precioDescuento = DiscountManager.getInstance().calcularPrecio(item.getPlan());
+        }
+        return precioDescuento;
+    }
+
+    /**
+     * @return total de la línea (2 decimales)
+     */
+    double getTotalLinea() {
+        return Math.round(getPrecioDescuento() * item.getQuantity() * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,125 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plan de apilamiento precalculado para una línea del carrito. Se compila una
+ * vez al aplicar descuentos (no en cada lectura de precio) a partir de la
+ * cadena de decoradores: - Las reglas condicionales se resuelven contra la
+ * categoría de la línea (pasan a multiplicativas o desaparecen). - Las capas
+ * neutras (factor 1, monto 0) se descartan. - Cada capa queda en forma canónica
+ * (factor, monto): precio = max(precio * factor - monto, 0).
+ *
+ * Orden canónico, sin fusionar capas: primero los porcentajes (multiplicativos
+ * y condicionales que aplican, de menor a mayor factor) y después los montos
+ * fijos con piso (de menor a mayor). Así el precio depende de qué descuentos
+ * tiene la línea y no del orden en que se hicieron clic: "monto fijo y después
+ * 10%" cuesta lo mismo que "10% y después monto fijo" (el 10% no rebaja el
+ * monto fijo). La cadena de decoradores sigue evaluando en orden de
+ * aplicación; el precio del carrito es el del plan. La evaluación es un ciclo
+ * sobre arreglos primitivos, sin llamadas virtuales por capa.
+ */
+final class StackingPlan {
+
+    private final double base;
+    private final double[] factores;
+    private final double[] montos;
+    /**
+     * Componente a leer cuando la cadena tiene un decorador sin regla (no se
+     * puede precalcular); null si el plan es completo.
+     */
+    private final Component respaldo;
+
+    private StackingPlan(double base, double[] factores, double[] montos, Component respaldo) {
+        this.base = base;
+        this.factores = factores;
+        this.montos = montos;
+        this.respaldo = respaldo;
+    }
+
+    /**
+     * Compila el plan de un componente (decorado o no).
+     *
+     * @param actual componente actual de la línea (no nulo)
+     */
+    static StackingPlan compilar(Component actual) {
+        if (actual == null) {
+            throw new IllegalArgumentException("Component nulo");
+        }
+        List<DiscountRule> capas = new ArrayList<>();
+        Component c = actual;
+        while (c instanceof DiscountDecorator d) {
+            DiscountRule r = d.regla();
+            if (r == null) {
+                return new StackingPlan(0, new double[0], new double[0], actual); // decorador externo
+            }
+            capas.add(r);
+            c = d.componente;
+        }
+        String categoria = c.getCategoria();
+
+        double[] porcentajes = new double[capas.size()];
+        double[] fijos = new double[capas.size()];
+        int nP = 0;
+        int nF = 0;
+        for (DiscountRule r : capas) {
+            switch (r.getAlgebra()) {
+                case MULTIPLICATIVO ->
+                    porcentajes[nP++] = r.getValor();
+                case ADITIVO_CON_PISO ->
+                    fijos[nF++] = r.getValor();
+                case CONDICIONAL -> {
+                    if (categoria.equalsIgnoreCase(r.getCategoria())) {
+                        porcentajes[nP++] = r.getValor();
+                    }
+                }
+            }
+        }
+        Arrays.sort(porcentajes, 0, nP);
+        Arrays.sort(fijos, 0, nF);
+
+        double[] f = new double[nP + nF];
+        double[] m = new double[nP + nF];
+        int n = 0;
+        for (int i = 0; i < nP; i++) {
+            if (porcentajes[i] != 1) { // capa neutra: no aporta pasos
+                f[n] = porcentajes[i];
+                n++;
+            }
+        }
+        for (int i = 0; i < nF; i++) {
+            if (fijos[i] != 0) {
+                f[n] = 1;
+                m[n] = fijos[i];
+                n++;
+            }
+        }
+        return new StackingPlan(c.getPrecio(), Arrays.copyOf(f, n), Arrays.copyOf(m, n), null);
+    }
+
+    /**
+     * @return precio unitario sin redondear
+     */
+    double evaluar() {
+        if (respaldo != null) {
+            return respaldo.getPrecio();
+        }
+        double p = base;
+        for (int i = 0; i < factores.length; i++) {
+            p = p * factores[i] - montos[i];
+            if (p < 0) {
+                p = 0;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return cantidad de pasos efectivos (0 = sin descuentos)
+     */
+    int pasos() {
+        return factores.length;
+    }
+}
@@ -0,0 +1,180 @@
+package com.crnahuas.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Fase de inicialización de la app, separada del menú interactivo. - Carga el
+ * catálogo (imagen binaria con -Dapp.catalogo=archivo, o el catálogo fijo). -
+ * Construye índice de búsqueda, inventario y registro de promociones. - Calcula
+ * un primer precio y registra el tiempo hasta ese precio (time-to-first-price).
+ *
+ * Todo queda listo antes de leer la consola y sin archivos ni hilos abiertos,
+ * así el estado tras {@link #inicializar} sirve como punto de
+ * checkpoint/restore (estilo CRaC).
+ *
+ * AppCDS (JDK 13+): scripts/appcds.sh genera target/app.jsa con una ejecución
+ * {@link #entrenar}; luego:
+ *
+ * <pre>
+ * java -XX:SharedArchiveFile=target/app.jsa -Dapp.catalogo=catalogo.bin -cp target/App-1.0-SNAPSHOT.jar com.crnahuas.app.AppPatrones
+ * </pre>
+ */
+final class Startup {
+
+    private static final long STOCK_INICIAL = 50;
+
+    private final Component[] catalog;
+    private final CatalogIndex index;
+    private final Inventario inventario;
+    private final String fuente;
+    private final long hastaPrimerPrecioMs;
+    private final double inicioMainMs;
+
+    private Startup(Component[] catalog, CatalogIndex index, Inventario inventario, String fuente,
+            long hastaPrimerPrecioMs, double inicioMainMs) {
+        this.catalog = catalog;
+        this.index = index;
+        this.inventario = inventario;
+        this.fuente = fuente;
+        this.hastaPrimerPrecioMs = hastaPrimerPrecioMs;
+        this.inicioMainMs = inicioMainMs;
+    }
+
+    /**
+     * Catálogo fijo (nivel estudiante), usado si no hay imagen binaria.
+     */
+    static Component[] catalogoPorDefecto() {
+        return new Component[]{
+            new ProductComponent("Polera básica", "BASICO", 14990),
+            new ProductComponent("Zapatilla running", "CALZADO", 49990),
+            new ProductComponent("Jeans slim", "BASICO", 29990),
+            new ProductComponent("Chaqueta liviana", "ABRIGO", 39990)
+        };
+    }
+
+    /**
+     * Inicializa todo el estado previo al menú.
+     *
+     * @param inicioMainNanos System.nanoTime() al entrar a main
+     */
+    static Startup inicializar(long inicioMainNanos) {
+        Component[] catalog = null;
+        String fuente = "fijo";
+        String archivo = System.getProperty("app.catalogo");
+        if (archivo != null && !archivo.isBlank()) {
+            try {
+                catalog = CatalogImage.leer(Path.of(archivo));
+                fuente = "imagen";
+            } catch (IOException e) {
+                System.out.println("No se pudo leer el catálogo (" + e.getMessage() + "); se usa el fijo.");
+            }
+        }
+        if (catalog == null) {
+            catalog = catalogoPorDefecto();
+        }
+
+        CatalogIndex index = new CatalogIndex();
+        Inventario inventario = new Inventario();
+        for (Component c : catalog) {
+            index.agregar(c);
+            inventario.reponer(c.getNombre(), STOCK_INICIAL);
+        }
+        DiscountStrategies.todas(); // ServiceLoader se resuelve aquí, no en el primer uso
+
+        // Primer precio: la app ya puede cotizar.
+        if (catalog.length > 0) {
+            DiscountManager.getInstance().calcularPrecio(StackingPlan.compilar(catalog[0]));
+        }
+        long ahora = System.currentTimeMillis();
+        long inicioJvm = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli).orElse(ahora);
+        double desdeMain = (System.nanoTime() - inicioMainNanos) / 1_000_000.0;
+        Startup s = new Startup(catalog, index, inventario, fuente, ahora - inicioJvm, desdeMain);
+        s.registrarMetrica();
+        return s;
+    }
+
+    /**
+     * Con -Dapp.metricas=true imprime la métrica; con -Dapp.metricas=archivo
+     * agrega una línea CSV (epoch_ms, ttfp_ms, init_ms, fuente, productos).
+     */
+    private void registrarMetrica() {
+        String destino = System.getProperty("app.metricas");
+        if (destino == null || destino.isBlank()) {
+            return;
+        }
+        if (destino.equalsIgnoreCase("true")) {
+            System.err.printf(Locale.ROOT, "time-to-first-price: %d ms (init %.3f ms, catálogo %s, %d productos)%n",
+                    hastaPrimerPrecioMs, inicioMainMs, fuente, catalog.length);
+            return;
+        }
+        String linea = String.format(Locale.ROOT, "%d,%d,%.3f,%s,%d",
+                System.currentTimeMillis(), hastaPrimerPrecioMs, inicioMainMs, fuente, catalog.length);
+        try {
+            Files.writeString(Path.of(destino), linea + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("No se pudo guardar la métrica: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ejecución de entrenamiento para AppCDS: recorre los caminos habituales
+     * (comandos, descuentos, vistas, búsqueda) sin consola, para que sus clases
+     * queden en el archivo compartido.
+     */
+    static void entrenar(Startup s) {
+        Inventario inv = new Inventario(); // no consume el stock real
+        for (Component c : s.catalog) {
+            inv.reponer(c.getNombre(), 10);
+        }
+        Cart cart = new Cart(inv);
+        CartContext ctx = new CartContext(cart);
+        Invoker invoker = new Invoker();
+        for (Component c : s.catalog) {
+            invoker.agregar(new AddProductToCartCommand(ctx, c, 2));
+        }
+        invoker.agregar(new ApplyTenPercentToAllCommand(ctx));
+        if (s.catalog.length > 0) {
+            invoker.agregar(new ApplyCategoryTwentyToAllCommand(ctx, s.catalog[0].getCategoria()));
+        }
+        invoker.agregar(new ApplyFlatAmountToAllCommand(ctx, 1));
+        for (DiscountStrategy st : DiscountStrategies.todas()) {
+            invoker.agregar(new ApplyStrategyToAllCommand(ctx, st, st.id().equals("monto") ? "1" : "BASICO"));
+        }
+        invoker.agregar(new DecreaseProductQtyAtIndexCommand(ctx, 1, 1));
+        invoker.agregar(new RemoveProductAtIndexCommand(ctx, 1));
+        invoker.ejecutarTodo();
+
+        double suma = cart.total();
+        PagedView<CartItem> view = new PagedView<>(cart.getItems(), 10);
+        for (int p = 1; p <= view.totalPaginas(); p++) {
+            for (CartItem ci : view.pagina(p)) {
+                suma += new CartRow(1, ci).getTotalLinea();
+            }
+        }
+        invoker.agregar(new ResetDiscountsAllCommand(ctx));
+        invoker.ejecutarTodo();
+        s.index.buscar("pol", null, 10);
+        s.index.buscar("chaketa", null, 10);
+        System.out.printf("Entrenamiento listo (%d líneas, control %.2f)%n", cart.getItemCount(), suma);
+    }
+
+    Component[] getCatalog() {
+        return catalog;
+    }
+
+    CatalogIndex getIndex() {
+        return index;
+    }
+
+    Inventario getInventario() {
+        return inventario;
+    }
+}
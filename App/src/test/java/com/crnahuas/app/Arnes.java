@@ -0,0 +1,216 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Soporte común de los arneses de prueba (simulaciones y benchmarks con su
+ * propio main): opciones "--nombre valor", reporte en consola, lista de fallas
+ * y código de salida (0 = OK, 1 = alguna verificación falló, 2 = argumentos
+ * inválidos).
+ *
+ * Los arneses viven en las fuentes de prueba (no van en el jar de la app). Se
+ * corren con:
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.crnahuas.app.InventarioStress -Dexec.args="--hilos 16"
+ * </pre>
+ */
+final class Arnes {
+
+    /**
+     * Cuerpo de un arnés.
+     */
+    interface Cuerpo {
+
+        void correr(Arnes a) throws Exception;
+    }
+
+    private final Map<String, String> opciones = new LinkedHashMap<>();
+    private final List<String> fallas = new ArrayList<>();
+
+    private Arnes(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Se espera --opcion valor: " + args[i]);
+            }
+            opciones.put(args[i], args[i + 1]);
+        }
+    }
+
+    /**
+     * Corre un arnés: imprime el título, ejecuta el cuerpo y termina con el
+     * resultado de las verificaciones.
+     *
+     * @param titulo encabezado del reporte
+     * @param ok mensaje final si no hubo fallas
+     */
+    static void ejecutar(String[] args, String titulo, String ok, Cuerpo cuerpo) throws Exception {
+        Arnes a;
+        try {
+            a = new Arnes(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Argumentos inválidos: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println("=== " + titulo + " ===");
+        try {
+            cuerpo.correr(a);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Argumentos inválidos: " + e.getMessage());
+            System.exit(2);
+        }
+        if (a.fallas.isEmpty()) {
+            System.out.println("OK: " + ok);
+        } else {
+            a.fallas.forEach(f -> System.out.println("FALLA: " + f));
+            System.exit(1);
+        }
+    }
+
+    /* --- Opciones (leer todas antes de usar {@link #sinOpcionesExtra}) --- */
+    private String valor(String nombre) {
+        return opciones.remove("--" + nombre);
+    }
+
+    int entero(String nombre, int defecto, int minimo) {
+        String v = valor(nombre);
+        int n = (v == null) ? defecto : Integer.parseInt(v);
+        if (n < minimo) {
+            throw new IllegalArgumentException("--" + nombre + " debe ser >= " + minimo);
+        }
+        return n;
+    }
+
+    long largo(String nombre, long defecto, long minimo) {
+        String v = valor(nombre);
+        long n = (v == null) ? defecto : Long.parseLong(v);
+        if (n < minimo) {
+            throw new IllegalArgumentException("--" + nombre + " debe ser >= " + minimo);
+        }
+        return n;
+    }
+
+    double real(String nombre, double defecto) {
+        String v = valor(nombre);
+        return (v == null) ? defecto : Double.parseDouble(v);
+    }
+
+    boolean logico(String nombre, boolean defecto) {
+        String v = valor(nombre);
+        return (v == null) ? defecto : Boolean.parseBoolean(v);
+    }
+
+    /**
+     * @throws IllegalArgumentException si quedó alguna opción sin leer
+     */
+    void sinOpcionesExtra() {
+        if (!opciones.isEmpty()) {
+            throw new IllegalArgumentException("Opcion desconocida: " + opciones.keySet().iterator().next());
+        }
+    }
+
+    /* --- Reporte --- */
+    /**
+     * Imprime una línea del reporte (formato con Locale.ROOT).
+     */
+    void linea(String formato, Object... args) {
+        System.out.println(String.format(Locale.ROOT, formato, args));
+    }
+
+    /**
+     * Registra una verificación fallida (el arnés sigue y termina con código 1).
+     */
+    void falla(String descripcion) {
+        fallas.add(descripcion);
+    }
+
+    /**
+     * Inicia los hilos y espera a que terminen todos.
+     */
+    static void correr(List<Thread> hilos) throws InterruptedException {
+        for (Thread t : hilos) {
+            t.start();
+        }
+        for (Thread t : hilos) {
+            t.join();
+        }
+    }
+}
+
+/**
+ * Histograma log-lineal de latencias en nanosegundos (16 sub-rangos por
+ * potencia de 2, error relativo < 6,25%). Uno por hilo, se combinan al final.
+ */
+final class Histograma {
+
+    private final long[] cuentas = new long[1024];
+    private long total;
+    private long max;
+
+    static int indice(long v) {
+        if (v < 16) {
+            return (int) Math.max(v, 0);
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int shift = msb - 4;
+        return (shift + 1) * 16 + (int) ((v >>> shift) & 15);
+    }
+
+    static long valorDe(int idx) {
+        if (idx < 16) {
+            return idx;
+        }
+        int shift = idx / 16 - 1;
+        return (16L + idx % 16) << shift;
+    }
+
+    void registrar(long nanos) {
+        cuentas[indice(nanos)]++;
+        total++;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    void combinar(Histograma otro) {
+        for (int i = 0; i < cuentas.length; i++) {
+            cuentas[i] += otro.cuentas[i];
+        }
+        total += otro.total;
+        max = Math.max(max, otro.max);
+    }
+
+    long percentil(double p) {
+        long objetivo = (long) Math.ceil(total * p / 100.0);
+        long acum = 0;
+        for (int i = 0; i < cuentas.length; i++) {
+            acum += cuentas[i];
+            if (acum >= objetivo && acum > 0) {
+                return Math.min(valorDe(i), max);
+            }
+        }
+        return max;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @return "p50 .. | p90 .. | p99 .. | max .." en microsegundos
+     */
+    String resumenMicros() {
+        return String.format(Locale.ROOT, "p50 %.1f | p90 %.1f | p99 %.1f | p99.9 %.1f | max %.1f",
+                percentil(50) / 1e3, percentil(90) / 1e3, percentil(99) / 1e3, percentil(99.9) / 1e3, max / 1e3);
+    }
+}
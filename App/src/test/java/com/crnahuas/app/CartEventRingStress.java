@@ -0,0 +1,233 @@
+package com.crnahuas.app;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de estrés del {@link CartEventRing} con varios productores. Cada hilo
+ * publica eventos numerados (linea = hilo, cantidad = secuencia del hilo).
+ * Verifica y reporta: - Orden: los eventos de cada productor llegan en el orden
+ * en que los publicó. - BLOQUEAR: no se pierde ninguno y el archivo del
+ * {@link FileCartEventSink} se reproduce igual a lo entregado. - DESCARTAR:
+ * los descartados contados son exactamente los publicar() que devolvieron
+ * false, y sin despachador se aceptan exactamente "capacidad" eventos. - En
+ * reposo el despachador queda dormido (no sondea).
+ *
+ * Opciones: --hilos, --eventos (por hilo), --capacidad, --lote (ver
+ * {@link Arnes}).
+ */
+final class CartEventRingStress {
+
+    private final Arnes a;
+    private final int hilos;
+    private final int eventos;
+    private final int capacidad;
+    private final int lote;
+
+    private CartEventRingStress(Arnes a) {
+        this.a = a;
+        this.hilos = a.entero("hilos", 8, 1);
+        this.eventos = a.entero("eventos", 200_000, 1);
+        this.capacidad = a.entero("capacidad", 256, 1);
+        this.lote = a.entero("lote", 64, 1);
+        a.sinOpcionesExtra();
+        if (Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("--capacidad debe ser potencia de 2");
+        }
+    }
+
+    /**
+     * Guarda lo entregado por el ring (lo llama un solo hilo a la vez).
+     */
+    private static final class Recolector implements CartEventListener {
+
+        final List<CartEvent> recibidos = new ArrayList<>();
+        int loteMax;
+
+        @Override
+        public void onLote(List<CartEvent> l) {
+            recibidos.addAll(l);
+            loteMax = Math.max(loteMax, l.size());
+        }
+    }
+
+    /**
+     * Publica desde todos los hilos.
+     *
+     * @return eventos aceptados (publicar() == true)
+     */
+    private long publicar(CartEventRing ring) throws InterruptedException {
+        AtomicLong aceptados = new AtomicLong();
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final int id = h;
+            ts.add(new Thread(() -> {
+                long ok = 0;
+                for (int i = 0; i < eventos; i++) {
+                    if (ring.publicar(new CartEvent(CartEventType.PRODUCTO_AGREGADO, i, "h" + id, id, i, ""))) {
+                        ok++;
+                    }
+                }
+                aceptados.addAndGet(ok);
+            }, "productor-" + h));
+        }
+        Arnes.correr(ts);
+        return aceptados.get();
+    }
+
+    /**
+     * Revisa que la secuencia de cada productor sea creciente.
+     *
+     * @param completa true si además no puede faltar ninguna
+     */
+    private void revisarOrden(String fase, List<CartEvent> recibidos, boolean completa) {
+        int[] siguiente = new int[hilos];
+        for (CartEvent e : recibidos) {
+            int h = e.getLinea();
+            if (completa ? e.getCantidad() != siguiente[h] : e.getCantidad() < siguiente[h]) {
+                a.falla(fase + ": productor " + h + " entregó " + e.getCantidad() + " esperando "
+                        + (completa ? "" : ">= ") + siguiente[h]);
+                return;
+            }
+            siguiente[h] = e.getCantidad() + 1;
+        }
+        if (completa) {
+            for (int h = 0; h < hilos; h++) {
+                if (siguiente[h] != eventos) {
+                    a.falla(fase + ": productor " + h + " entregó " + siguiente[h] + " de " + eventos);
+                }
+            }
+        }
+    }
+
+    /**
+     * BLOQUEAR con despachador y sink en archivo: sin pérdidas, en orden, y
+     * el archivo se reproduce igual.
+     */
+    private void bloquear() throws Exception {
+        Path archivo = Files.createTempFile("cart-events", ".log");
+        try {
+            CartEventRing ring = new CartEventRing(capacidad, CartEventRing.Politica.BLOQUEAR, lote);
+            Recolector r = new Recolector();
+            ring.agregarConsumidor(r);
+            long total = (long) hilos * eventos;
+            List<CartEvent> reproducidos;
+            try (FileCartEventSink sink = new FileCartEventSink(archivo)) {
+                ring.agregarConsumidor(sink);
+                ring.iniciar();
+                long t0 = System.nanoTime();
+                long aceptados = publicar(ring);
+                double s = (System.nanoTime() - t0) / 1e9;
+                revisarReposo(ring);
+                ring.detener();
+                a.linea("BLOQUEAR: %d eventos en %.2f s (%.0f/s) | lote máximo %d | descartados %d | pendientes %d",
+                        r.recibidos.size(), s, total / s, r.loteMax, ring.getDescartados(), ring.pendientes());
+                if (aceptados != total || r.recibidos.size() != total) {
+                    a.falla("BLOQUEAR: aceptados " + aceptados + ", entregados " + r.recibidos.size() + " de " + total);
+                }
+                if (ring.getDescartados() != 0 || ring.pendientes() != 0) {
+                    a.falla("BLOQUEAR: descartados " + ring.getDescartados() + ", pendientes " + ring.pendientes());
+                }
+                if (r.loteMax > lote) {
+                    a.falla("BLOQUEAR: lote de " + r.loteMax + " supera " + lote);
+                }
+            }
+            revisarOrden("BLOQUEAR", r.recibidos, true);
+            reproducidos = FileCartEventSink.reproducir(archivo);
+            int distintos = 0;
+            for (int i = 0; i < Math.min(reproducidos.size(), r.recibidos.size()); i++) {
+                if (!reproducidos.get(i).toLinea().equals(r.recibidos.get(i).toLinea())) {
+                    distintos++;
+                }
+            }
+            a.linea("Reproducción: %d eventos leídos, %d distintos", reproducidos.size(), distintos);
+            if (reproducidos.size() != r.recibidos.size() || distintos > 0) {
+                a.falla("Reproducción: " + reproducidos.size() + " eventos, " + distintos + " distintos");
+            }
+        } finally {
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    /**
+     * Con todo entregado, el despachador debe quedar en park sin timeout.
+     */
+    private void revisarReposo(CartEventRing ring) throws InterruptedException {
+        Thread d = null;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("cart-events")) {
+                d = t;
+            }
+        }
+        Thread.State estado = null;
+        for (int i = 0; i < 100 && d != null; i++) { // tras spin y yield se duerme
+            Thread.sleep(10);
+            estado = d.getState();
+            if (estado == Thread.State.WAITING && ring.pendientes() == 0) {
+                break;
+            }
+        }
+        a.linea("Reposo: despachador %s", estado);
+        if (estado != Thread.State.WAITING) {
+            a.falla("Reposo: el despachador no quedó dormido (" + estado + ")");
+        }
+    }
+
+    /**
+     * DESCARTAR sin despachador: nadie drena, así que se aceptan exactamente
+     * "capacidad" eventos y el resto se cuenta como descartado.
+     */
+    private void descartarLleno() throws InterruptedException {
+        CartEventRing ring = new CartEventRing(capacidad, CartEventRing.Politica.DESCARTAR, lote);
+        Recolector r = new Recolector();
+        ring.agregarConsumidor(r);
+        long total = (long) hilos * eventos;
+        long aceptados = publicar(ring);
+        long pendientes = ring.pendientes();
+        int entregados = ring.drenar();
+        long esperados = Math.min(capacidad, total);
+        a.linea("DESCARTAR sin despachador: aceptados %d | descartados %d | pendientes %d | entregados %d",
+                aceptados, ring.getDescartados(), pendientes, entregados);
+        if (aceptados != esperados || ring.getDescartados() != total - esperados
+                || pendientes != esperados || entregados != esperados) {
+            a.falla("DESCARTAR sin despachador: se esperaban " + esperados + " aceptados y "
+                    + (total - esperados) + " descartados");
+        }
+        revisarOrden("DESCARTAR sin despachador", r.recibidos, false);
+    }
+
+    /**
+     * DESCARTAR con despachador: aceptados + descartados = publicados y se
+     * entregan exactamente los aceptados.
+     */
+    private void descartarConDespachador() throws InterruptedException {
+        CartEventRing ring = new CartEventRing(capacidad, CartEventRing.Politica.DESCARTAR, lote);
+        Recolector r = new Recolector();
+        ring.agregarConsumidor(r);
+        ring.iniciar();
+        long total = (long) hilos * eventos;
+        long aceptados = publicar(ring);
+        ring.detener();
+        a.linea("DESCARTAR con despachador: aceptados %d | descartados %d | entregados %d",
+                aceptados, ring.getDescartados(), r.recibidos.size());
+        if (aceptados + ring.getDescartados() != total || r.recibidos.size() != aceptados
+                || ring.pendientes() != 0) {
+            a.falla("DESCARTAR con despachador: aceptados " + aceptados + " + descartados "
+                    + ring.getDescartados() + " != " + total + " o entregados " + r.recibidos.size());
+        }
+        revisarOrden("DESCARTAR con despachador", r.recibidos, false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Estrés del buffer de eventos", "orden, sin pérdidas y descartes exactos", a -> {
+            CartEventRingStress s = new CartEventRingStress(a);
+            a.linea("%d hilos x %d eventos, capacidad %d, lote %d", s.hilos, s.eventos, s.capacidad, s.lote);
+            s.bloquear();
+            s.descartarLleno();
+            s.descartarConDespachador();
+        });
+    }
+}
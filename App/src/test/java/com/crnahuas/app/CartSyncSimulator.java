@@ -0,0 +1,324 @@
+package com.crnahuas.app;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Simulación de sincronización entre dos nodos: un carrito de origen que
+ * recibe comandos al azar (con semilla) y una {@link CartReplica} que se
+ * mantiene al día con deltas. Verifica y reporta: - Tras cada delta, la réplica
+ * es igual al origen línea por línea (producto, cantidad, pila de descuentos,
+ * posición) y en el total, tanto con deltas incrementales ({@link CartTracker})
+ * como con deltas entre fotos completas. - Quitar y volver a agregar un
+ * producto reordena las líneas también en la réplica (MOVER_AL_FINAL). - Los
+ * cambios locales en la réplica son conflicto y no se aplica nada. - Una
+ * réplica con inventario se rechaza. - Tamaño de los deltas. - Con un carrito
+ * grande, el costo del delta incremental no depende del tamaño del carrito.
+ *
+ * Opciones: --comandos, --sync-cada, --productos, --lineas (carrito grande),
+ * --semilla (ver {@link Arnes}).
+ */
+final class CartSyncSimulator {
+
+    private final Arnes a;
+    private final int comandos;
+    private final int syncCada;
+    private final int productos;
+    private final int lineas;
+    private final long semilla;
+
+    private CartSyncSimulator(Arnes a) {
+        this.a = a;
+        this.comandos = a.entero("comandos", 20_000, 1);
+        this.syncCada = a.entero("sync-cada", 8, 1);
+        this.productos = a.entero("productos", 12, 1);
+        this.lineas = a.entero("lineas", 5_000, 1);
+        this.semilla = a.largo("semilla", 42, Long.MIN_VALUE);
+        a.sinOpcionesExtra();
+    }
+
+    /**
+     * Nodo de origen: carrito con inventario, invoker y catálogo.
+     */
+    private static final class Origen {
+
+        final Component[] catalogo;
+        final Inventario inventario = new Inventario();
+        final Cart cart = new Cart(inventario);
+        final CartContext ctx = new CartContext(cart);
+        final Invoker invoker = new Invoker();
+        final CartTracker tracker = new CartTracker(cart);
+        CartSnapshot foto = CartSnapshot.vacio();
+
+        Origen(int productos) {
+            String[] categorias = {"BASICO", "CALZADO", "ABRIGO", "ACCESORIO"};
+            catalogo = new Component[productos];
+            for (int i = 0; i < productos; i++) {
+                catalogo[i] = new ProductComponent("Producto " + i, categorias[i % categorias.length], 990 + 1_000 * i);
+                inventario.reponer(catalogo[i].getNombre(), 1_000_000);
+            }
+        }
+
+        void ejecutar(Command c) {
+            invoker.agregar(c);
+            invoker.ejecutarTodo();
+        }
+
+        /**
+         * @return delta incremental desde el último enviado
+         */
+        CartDelta delta() {
+            return tracker.siguiente();
+        }
+
+        /**
+         * @return delta entre la última foto completa y la actual
+         */
+        CartDelta deltaCompleto() {
+            CartSnapshot nueva = CartSnapshot.de(cart);
+            CartDelta d = CartDelta.entre(foto, nueva);
+            foto = nueva;
+            return d;
+        }
+    }
+
+    /**
+     * Fase principal: comandos al azar en el origen y un delta cada 1 a
+     * {@code syncCada} comandos.
+     */
+    private void simular() {
+        SplittableRandom r = new SplittableRandom(semilla);
+        Origen o = new Origen(productos);
+        CartReplica replica = new CartReplica(new Cart());
+        CartReplica espejo = new CartReplica(new Cart()); // recibe los deltas entre fotos completas
+        long deltas = 0;
+        long vacios = 0;
+        long ops = 0;
+        long maxOps = 0;
+        long mover = 0;
+        long opsCompletos = 0;
+        long distintos = 0;
+        int hastaSync = 1 + r.nextInt(syncCada);
+        for (int i = 0; i < comandos; i++) {
+            comandoAlAzar(r, o);
+            if (--hastaSync > 0 && i < comandos - 1) {
+                continue;
+            }
+            hastaSync = 1 + r.nextInt(syncCada);
+            CartDelta d = o.delta();
+            CartDelta completo = o.deltaCompleto();
+            try {
+                replica.aplicar(d);
+                espejo.aplicar(completo);
+            } catch (IllegalStateException e) {
+                a.falla("conflicto inesperado en delta " + deltas + ": " + e.getMessage());
+                return;
+            }
+            deltas++;
+            vacios += d.isEmpty() ? 1 : 0;
+            ops += d.getOps().size();
+            maxOps = Math.max(maxOps, d.getOps().size());
+            mover += d.getOps().stream().filter(op -> op.tipo == CartDelta.Tipo.MOVER_AL_FINAL).count();
+            opsCompletos += completo.getOps().size();
+            String diferencia = comparar(o.cart, replica.getCart());
+            if (diferencia == null) {
+                diferencia = comparar(o.cart, espejo.getCart());
+            }
+            if (diferencia != null) {
+                distintos++;
+                if (distintos <= 3) {
+                    a.falla("réplica distinta tras " + d + ": " + diferencia);
+                }
+            }
+        }
+        if (distintos > 0) {
+            a.falla(distintos + " deltas dejaron la réplica distinta del origen");
+        }
+        a.linea("Simulación: %d comandos | %d deltas (%d vacíos) | %.2f ops/delta (máx %d, %d MOVER_AL_FINAL) | entre fotos %.2f ops/delta | réplicas distintas %d",
+                comandos, deltas, vacios, deltas == 0 ? 0 : (double) ops / deltas, maxOps, mover,
+                deltas == 0 ? 0 : (double) opsCompletos / deltas, distintos);
+    }
+
+    private void comandoAlAzar(SplittableRandom r, Origen o) {
+        int lineas = o.cart.getItemCount();
+        Component p = o.catalogo[r.nextInt(o.catalogo.length)];
+        int dado = r.nextInt(100);
+        if (dado < 40 || lineas == 0) {
+            o.ejecutar(new AddProductToCartCommand(o.ctx, p, 1 + r.nextInt(3)));
+        } else if (dado < 52) {
+            o.ejecutar(new RemoveProductAtIndexCommand(o.ctx, 1 + r.nextInt(lineas)));
+        } else if (dado < 64) {
+            o.ejecutar(new DecreaseProductQtyAtIndexCommand(o.ctx, 1 + r.nextInt(lineas), 1));
+        } else if (dado < 74) {
+            // Quitar y volver a agregar el mismo producto: mismo contenido, otro orden.
+            int idx = 1 + r.nextInt(lineas);
+            CartItem ci = o.cart.getItems().get(idx - 1);
+            o.ejecutar(new RemoveProductAtIndexCommand(o.ctx, idx));
+            o.ejecutar(new AddProductToCartCommand(o.ctx, ci.getBase(), ci.getQuantity()));
+        } else {
+            o.ejecutar(switch (r.nextInt(5)) {
+                case 0 -> new ApplyTenPercentToAllCommand(o.ctx);
+                case 1 -> new ApplyCategoryTwentyToAllCommand(o.ctx, p.getCategoria());
+                case 2 -> new ApplyFlatAmountToAllCommand(o.ctx, 1 + r.nextInt(500));
+                default -> new ResetDiscountsAllCommand(o.ctx);
+            });
+        }
+    }
+
+    /**
+     * @return descripción de la primera diferencia, o null si son iguales
+     */
+    private static String comparar(Cart a, Cart b) {
+        if (a.getItemCount() != b.getItemCount()) {
+            return "líneas " + a.getItemCount() + " vs " + b.getItemCount();
+        }
+        for (int i = 0; i < a.getItemCount(); i++) {
+            CartItem x = a.getItems().get(i);
+            CartItem y = b.getItems().get(i);
+            if (!CartSnapshot.clave(x.getBase().getNombre()).equals(CartSnapshot.clave(y.getBase().getNombre()))) {
+                return "línea " + (i + 1) + ": " + x.getBase().getNombre() + " vs " + y.getBase().getNombre();
+            }
+            if (x.getQuantity() != y.getQuantity()) {
+                return "línea " + (i + 1) + ": cantidad " + x.getQuantity() + " vs " + y.getQuantity();
+            }
+            if (!CartSnapshot.capas(x.getActual()).equals(CartSnapshot.capas(y.getActual()))) {
+                return "línea " + (i + 1) + ": descuentos distintos";
+            }
+        }
+        if (Double.compare(a.total(), b.total()) != 0) {
+            return "total " + a.total() + " vs " + b.total();
+        }
+        return null;
+    }
+
+    /**
+     * Carrito grande: un comando y un delta por ronda. El delta incremental
+     * solo mira las líneas cambiadas; el de fotos completas recorre todo.
+     */
+    private void escala() {
+        SplittableRandom r = new SplittableRandom(semilla + 1);
+        Origen o = new Origen(lineas);
+        for (Component p : o.catalogo) {
+            o.cart.add(p, 1);
+        }
+        CartReplica replica = new CartReplica(new Cart());
+        replica.aplicar(o.delta());
+        o.deltaCompleto();
+        int rondas = Math.min(comandos, 2_000);
+        long nanosIncremental = 0;
+        long nanosCompleto = 0;
+        for (int i = 0; i < rondas; i++) {
+            comandoDeLinea(r, o);
+            long t0 = System.nanoTime();
+            CartDelta d = o.delta();
+            long t1 = System.nanoTime();
+            o.deltaCompleto();
+            long t2 = System.nanoTime();
+            nanosIncremental += t1 - t0;
+            nanosCompleto += t2 - t1;
+            replica.aplicar(d);
+        }
+        String dif = comparar(o.cart, replica.getCart());
+        if (dif != null) {
+            a.falla("carrito grande: réplica distinta (" + dif + ")");
+        }
+        a.linea("Carrito de %d líneas, %d deltas: incremental %.1f µs/delta | entre fotos completas %.1f µs/delta",
+                o.cart.getItemCount(), rondas, nanosIncremental / 1e3 / rondas, nanosCompleto / 1e3 / rondas);
+    }
+
+    /**
+     * Cambio de una sola línea (sin descuentos a todo el carrito).
+     */
+    private static void comandoDeLinea(SplittableRandom r, Origen o) {
+        List<CartItem> items = o.cart.getItems();
+        int idx = 1 + r.nextInt(items.size());
+        CartItem ci = items.get(idx - 1);
+        switch (r.nextInt(3)) {
+            case 0 ->
+                o.ejecutar(new AddProductToCartCommand(o.ctx, ci.getBase(), 1));
+            case 1 -> {
+                o.ejecutar(new RemoveProductAtIndexCommand(o.ctx, idx));
+                o.ejecutar(new AddProductToCartCommand(o.ctx, ci.getBase(), 1 + r.nextInt(3)));
+            }
+            default ->
+                ci.setActual(new StrategyDecorator(ci.getActual(), DiscountRule.aditivoConPiso(1 + r.nextInt(100))));
+        }
+    }
+
+    /**
+     * Casos puntuales: reordenamiento, cambios locales e inventario.
+     */
+    private void casos() {
+
+        // [A, B] -> quitar línea 1 y agregar A: el origen queda [B, A].
+        Origen o = new Origen(2);
+        CartReplica replica = new CartReplica(new Cart());
+        o.ejecutar(new AddProductToCartCommand(o.ctx, o.catalogo[0], 1));
+        o.ejecutar(new AddProductToCartCommand(o.ctx, o.catalogo[1], 1));
+        replica.aplicar(o.delta());
+        o.ejecutar(new RemoveProductAtIndexCommand(o.ctx, 1));
+        o.ejecutar(new AddProductToCartCommand(o.ctx, o.catalogo[0], 1));
+        CartDelta d = o.delta();
+        replica.aplicar(d);
+        String dif = comparar(o.cart, replica.getCart());
+        if (d.isEmpty() || dif != null) {
+            a.falla("quitar y volver a agregar: " + d + (dif == null ? "" : " (" + dif + ")"));
+        }
+        a.linea("Quitar y volver a agregar: %s", d);
+
+        // Cambio local con el mismo contenido por nombre (solo cambia el orden).
+        Cart local = replica.getCart();
+        local.removeAtIndex(1);
+        local.add(o.catalogo[1], 1);
+        a.linea("Cambio local (reordenar): %s", conflicto(o, replica));
+
+        // Cambio local de cantidad en una réplica nueva y al día.
+        Origen o2 = new Origen(2);
+        CartReplica r2 = new CartReplica(new Cart());
+        o2.ejecutar(new AddProductToCartCommand(o2.ctx, o2.catalogo[0], 2));
+        r2.aplicar(o2.delta());
+        r2.getCart().add(o2.catalogo[0], 1);
+        o2.ejecutar(new ApplyTenPercentToAllCommand(o2.ctx));
+        a.linea("Cambio local (cantidad): %s", conflicto(o2, r2));
+
+        // Una réplica con inventario podría fallar a mitad de un delta.
+        try {
+            new CartReplica(new Cart(new Inventario()));
+            a.falla("se aceptó una réplica con inventario");
+            a.linea("Réplica con inventario: aceptada");
+        } catch (IllegalArgumentException e) {
+            a.linea("Réplica con inventario: rechazada (%s)", e.getMessage());
+        }
+    }
+
+    /**
+     * Envía el próximo delta a una réplica con cambios locales: debe haber
+     * conflicto y la réplica no debe cambiar.
+     */
+    private String conflicto(Origen o, CartReplica replica) {
+        Cart local = replica.getCart();
+        CartSnapshot antes = CartSnapshot.de(local);
+        long version = local.getVersion();
+        try {
+            replica.aplicar(o.delta());
+            a.falla("cambio local sin conflicto");
+            return "sin conflicto";
+        } catch (IllegalStateException e) {
+            if (local.getVersion() != version || !CartDelta.entre(antes, CartSnapshot.de(local)).isEmpty()) {
+                a.falla("la réplica cambió pese al conflicto");
+            }
+            return "conflicto (" + e.getMessage() + ")";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Sincronización de carritos",
+                "réplica igual al origen en cada delta; cambios locales detectados", a -> {
+                    CartSyncSimulator s = new CartSyncSimulator(a);
+                    a.linea("semilla %d, %d productos", s.semilla, s.productos);
+                    s.simular();
+                    s.escala();
+                    s.casos();
+                });
+    }
+}
@@ -0,0 +1,189 @@
+package com.crnahuas.app;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmark del {@link CatalogIndex} con un catálogo sintético determinista.
+ * Reporta: - Memoria del índice (heap retenido tras GC) por producto y por
+ * nodo del trie, y tiempo de construcción. - Latencia (percentiles) de
+ * búsqueda por prefijo, tolerante a errores, con filtro de categoría y de
+ * consultas cortas de 1 letra. - Verifica contra un recorrido lineal que las
+ * búsquedas por prefijo devuelven ids ascendentes, sin repetidos, que
+ * coinciden, y tantos como el límite o como coincidencias haya.
+ *
+ * Opciones: --productos, --consultas, --vocabulario, --semilla (ver
+ * {@link Arnes}). Para una medición de memoria estable conviene un heap fijo
+ * (-Xms = -Xmx).
+ */
+final class CatalogIndexBench {
+
+    private static final String[] SILABAS = {"ba", "ca", "da", "fe", "go", "la", "li", "ma", "mo", "na",
+        "pe", "po", "ra", "ri", "sa", "so", "ta", "te", "to", "ve", "za", "chi", "lle", "ñu"};
+    private static final String[] CATEGORIAS = {"BASICO", "CALZADO", "ABRIGO", "ACCESORIO"};
+
+    private final Arnes a;
+    private final int productos;
+    private final int consultas;
+    private final int vocabulario;
+    private final long semilla;
+
+    private CatalogIndexBench(Arnes a) {
+        this.a = a;
+        this.productos = a.entero("productos", 200_000, 1);
+        this.consultas = a.entero("consultas", 20_000, 1);
+        this.vocabulario = a.entero("vocabulario", 20_000, 1);
+        this.semilla = a.largo("semilla", 42, Long.MIN_VALUE);
+        a.sinOpcionesExtra();
+    }
+
+    /**
+     * Palabra de 2 a 4 sílabas.
+     */
+    private static String palabra(SplittableRandom r) {
+        StringBuilder sb = new StringBuilder();
+        int n = 2 + r.nextInt(3);
+        for (int i = 0; i < n; i++) {
+            sb.append(SILABAS[r.nextInt(SILABAS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Cambia una letra al azar (error de tipeo).
+     */
+    private static String conError(String w, SplittableRandom r) {
+        char[] cs = w.toCharArray();
+        cs[r.nextInt(cs.length)] = (char) ('a' + r.nextInt(26));
+        return new String(cs);
+    }
+
+    private static long heapUsado() {
+        Runtime rt = Runtime.getRuntime();
+        long usado = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // varias pasadas para estabilizar
+            System.gc();
+            usado = Math.min(usado, rt.totalMemory() - rt.freeMemory());
+        }
+        return usado;
+    }
+
+    private void ejecutar() {
+        SplittableRandom r = new SplittableRandom(semilla);
+        String[] vocab = new String[vocabulario];
+        for (int i = 0; i < vocab.length; i++) {
+            vocab[i] = palabra(r);
+        }
+        // Los productos se crean antes de medir: solo cuenta lo que retiene el índice.
+        Component[] catalogo = new Component[productos];
+        for (int i = 0; i < productos; i++) {
+            String nombre = vocab[r.nextInt(vocab.length)] + " " + vocab[r.nextInt(vocab.length)] + " " + i;
+            catalogo[i] = new ProductComponent(nombre, CATEGORIAS[i % CATEGORIAS.length], 1_000 + r.nextInt(99_000));
+        }
+
+        long antes = heapUsado();
+        long t0 = System.nanoTime();
+        CatalogIndex index = new CatalogIndex();
+        for (Component c : catalogo) {
+            index.agregar(c);
+        }
+        double construccionMs = (System.nanoTime() - t0) / 1e6;
+        long bytes = heapUsado() - antes;
+        int nodos = index.nodos();
+
+        a.linea("%d productos, vocabulario %d, semilla %d", productos, vocabulario, semilla);
+        a.linea("Construcción: %.1f ms | Nodos del trie: %d", construccionMs, nodos);
+        a.linea("Memoria: %.1f MB | %.1f bytes/producto | %.1f bytes/nodo",
+                bytes / 1048576.0, (double) bytes / productos, nodos == 0 ? 0 : (double) bytes / nodos);
+        verificarPrefijos(index, catalogo, vocab, r);
+        medir("Prefijo (3 letras)", consultas, r, q -> index.buscar(q, null, 20),
+                rr -> vocab[rr.nextInt(vocab.length)].substring(0, 3));
+        medir("Palabra completa", consultas, r, q -> index.buscar(q, null, 20),
+                rr -> vocab[rr.nextInt(vocab.length)]);
+        medir("Con error de tipeo", consultas, r, q -> index.buscar(q, null, 20),
+                rr -> conError(vocab[rr.nextInt(vocab.length)], rr));
+        medir("Error + categoría", consultas, r, q -> index.buscar(q, "calzado", 20),
+                rr -> conError(vocab[rr.nextInt(vocab.length)], rr));
+        medir("1 letra", consultas, r, q -> index.buscar(q, null, 20),
+                rr -> String.valueOf((char) ('a' + rr.nextInt(26))));
+    }
+
+    /**
+     * Compara búsquedas por prefijo (con y sin categoría) contra un recorrido
+     * lineal del catálogo.
+     */
+    private void verificarPrefijos(CatalogIndex index, Component[] catalogo, String[] vocab, SplittableRandom r) {
+        String[][] palabras = new String[catalogo.length][];
+        for (int i = 0; i < catalogo.length; i++) {
+            palabras[i] = CatalogIndex.norm(catalogo[i].getNombre()).split(" ");
+        }
+        int revisadas = Math.min(consultas, 200);
+        for (int k = 0; k < revisadas; k++) {
+            String w = vocab[r.nextInt(vocab.length)];
+            String q = CatalogIndex.norm(w.substring(0, 1 + r.nextInt(w.length())));
+            String cat = (k % 2 == 0) ? null : CATEGORIAS[r.nextInt(CATEGORIAS.length)];
+            int limite = 1 + r.nextInt(40);
+            List<Integer> ids = index.buscarPrefijo(q, cat, limite);
+            int coincidencias = 0;
+            for (int i = 0; i < catalogo.length; i++) {
+                if (coincide(palabras[i], q) && (cat == null || catalogo[i].getCategoria().equals(cat))) {
+                    coincidencias++;
+                }
+            }
+            boolean ok = ids.size() == Math.min(limite, coincidencias);
+            for (int i = 0; ok && i < ids.size(); i++) {
+                int id = ids.get(i);
+                ok = (i == 0 || ids.get(i - 1) < id) && coincide(palabras[id], q)
+                        && (cat == null || catalogo[id].getCategoria().equals(cat));
+            }
+            if (!ok) {
+                a.falla("Prefijo \"" + q + "\" (categoría " + cat + ", límite " + limite + "): " + ids
+                        + " con " + coincidencias + " coincidencias");
+                return;
+            }
+        }
+        a.linea("Verificación: %d búsquedas por prefijo iguales al recorrido lineal", revisadas);
+    }
+
+    private static boolean coincide(String[] palabras, String prefijo) {
+        for (String p : palabras) {
+            if (p.startsWith(prefijo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface Consulta {
+
+        List<Integer> buscar(String q);
+    }
+
+    private interface Generador {
+
+        String siguiente(SplittableRandom r);
+    }
+
+    /**
+     * Latencias de {@code n} consultas (tras un calentamiento de igual
+     * tamaño) y promedio de resultados devueltos.
+     */
+    private void medir(String titulo, int n, SplittableRandom r, Consulta c, Generador g) {
+        for (int i = 0; i < n; i++) { // calentamiento (JIT)
+            c.buscar(g.siguiente(r));
+        }
+        Histograma h = new Histograma();
+        long resultados = 0;
+        for (int i = 0; i < n; i++) {
+            String q = g.siguiente(r);
+            long t0 = System.nanoTime();
+            resultados += c.buscar(q).size();
+            h.registrar(System.nanoTime() - t0);
+        }
+        a.linea("%-20s %s µs | %.1f resultados", titulo, h.resumenMicros(), (double) resultados / n);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Índice de catálogo", "benchmark completo", a -> new CatalogIndexBench(a).ejecutar());
+    }
+}
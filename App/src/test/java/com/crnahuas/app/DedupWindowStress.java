@@ -0,0 +1,197 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Prueba de la deduplicación de comandos ({@link DedupWindow} +
+ * {@link IdempotentCommand}). Verifica y reporta: - Reintentos: cada pedido
+ * del cliente llega 1 a 3 veces (duplicados mezclados con otros pedidos) y las
+ * cantidades del carrito son las de los pedidos únicos, sin duplicar. - Un
+ * comando que falla (sin stock) libera su clave: el reintento con la misma
+ * clave se acepta una vez. - Con varios hilos registrando las mismas claves,
+ * cada una se acepta exactamente una vez. - La memoria queda acotada (size <=
+ * capacidad) y una clave vencida vuelve a aceptarse.
+ *
+ * Opciones: --pedidos, --productos, --hilos, --claves, --semilla (ver
+ * {@link Arnes}).
+ */
+final class DedupWindowStress {
+
+    private final Arnes a;
+    private final int pedidos;
+    private final int productos;
+    private final int hilos;
+    private final int claves;
+    private final long semilla;
+
+    private DedupWindowStress(Arnes a) {
+        this.a = a;
+        this.pedidos = a.entero("pedidos", 20_000, 1);
+        this.productos = a.entero("productos", 50, 1);
+        this.hilos = a.entero("hilos", 8, 1);
+        this.claves = a.entero("claves", 4096, 1);
+        this.semilla = a.largo("semilla", 42, Long.MIN_VALUE);
+        a.sinOpcionesExtra();
+    }
+
+    /**
+     * Pedidos con duplicados: el carrito debe quedar con la suma de los
+     * pedidos únicos.
+     */
+    private void reintentos() {
+        SplittableRandom r = new SplittableRandom(semilla);
+        Component[] catalogo = new Component[productos];
+        for (int i = 0; i < productos; i++) {
+            catalogo[i] = new ProductComponent("Producto " + i, "BASICO", 1_000 + i);
+        }
+        int[] producto = new int[pedidos];
+        int[] qty = new int[pedidos];
+        long[] esperado = new long[productos];
+        List<Integer> entregas = new ArrayList<>();
+        for (int k = 0; k < pedidos; k++) {
+            producto[k] = r.nextInt(productos);
+            qty[k] = 1 + r.nextInt(5);
+            esperado[producto[k]] += qty[k];
+            int copias = 1 + r.nextInt(3);
+            for (int c = 0; c < copias; c++) {
+                entregas.add(k);
+            }
+        }
+        // Los duplicados llegan desordenados (reintentos por timeout del cliente).
+        for (int i = entregas.size() - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            entregas.set(i, entregas.set(j, entregas.get(i)));
+        }
+
+        Cart cart = new Cart();
+        CartContext ctx = new CartContext(cart);
+        Invoker inv = new Invoker(new DedupWindow(Integer.highestOneBit(pedidos) * 2, 60_000));
+        int aceptadas = 0;
+        for (int k : entregas) {
+            if (inv.agregar(new IdempotentCommand("pedido-" + k,
+                    new AddProductToCartCommand(ctx, catalogo[producto[k]], qty[k])))) {
+                aceptadas++;
+            }
+            inv.ejecutarTodo();
+        }
+        int distintas = 0;
+        for (int p = 0; p < productos; p++) {
+            CartItem ci = cart.buscarLinea(catalogo[p].getNombre());
+            long real = (ci == null) ? 0 : ci.getQuantity();
+            if (real != esperado[p]) {
+                distintas++;
+            }
+        }
+        a.linea("Reintentos: %d pedidos, %d entregas, %d aceptadas, %d productos con cantidad distinta",
+                pedidos, entregas.size(), aceptadas, distintas);
+        if (aceptadas != pedidos || distintas > 0) {
+            a.falla("Reintentos: " + aceptadas + " aceptadas de " + pedidos + ", " + distintas
+                    + " productos con cantidad duplicada o perdida");
+        }
+    }
+
+    /**
+     * Un comando que falla libera su clave; el reintento se aplica una vez.
+     */
+    private void fallaYReintento() {
+        Inventario stock = new Inventario();
+        Component p = new ProductComponent("Zapatilla running", "CALZADO", 49_990);
+        stock.reponer(p.getNombre(), 1);
+        Cart cart = new Cart(stock);
+        CartContext ctx = new CartContext(cart);
+        Invoker inv = new Invoker(new DedupWindow(64, 60_000));
+
+        boolean primera = inv.agregar(new IdempotentCommand("pago-1", new AddProductToCartCommand(ctx, p, 3)));
+        boolean fallo = false;
+        try {
+            inv.ejecutarTodo();
+        } catch (IllegalStateException e) {
+            fallo = true; // sin stock
+        }
+        stock.reponer(p.getNombre(), 10);
+        boolean reintento = inv.agregar(new IdempotentCommand("pago-1", new AddProductToCartCommand(ctx, p, 3)));
+        inv.ejecutarTodo();
+        boolean duplicado = inv.agregar(new IdempotentCommand("pago-1", new AddProductToCartCommand(ctx, p, 3)));
+        inv.ejecutarTodo();
+        CartItem ci = cart.buscarLinea(p.getNombre());
+        int cantidad = (ci == null) ? 0 : ci.getQuantity();
+        a.linea("Falla y reintento: primera %s, falló %s, reintento %s, duplicado %s, cantidad %d",
+                primera, fallo, reintento, duplicado, cantidad);
+        if (!primera || !fallo || !reintento || duplicado || cantidad != 3) {
+            a.falla("Falla y reintento: se esperaba falla, reintento aceptado, duplicado rechazado y cantidad 3");
+        }
+    }
+
+    /**
+     * Todos los hilos registran las mismas claves en distinto orden: cada
+     * una se acepta una sola vez.
+     */
+    private void concurrencia() throws InterruptedException {
+        DedupWindow w = new DedupWindow(Integer.highestOneBit(claves) * 2, 60_000);
+        AtomicIntegerArray aceptadas = new AtomicIntegerArray(claves);
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final long s = semilla + h;
+            ts.add(new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(s);
+                int inicio = r.nextInt(claves);
+                int paso = 1 + 2 * r.nextInt(claves); // recorre todas si claves es potencia de 2
+                for (int i = 0; i < claves; i++) {
+                    int k = (int) ((inicio + (long) i * paso) % claves);
+                    if (w.registrar("clave-" + k)) {
+                        aceptadas.incrementAndGet(k);
+                    }
+                }
+            }, "dedup-" + h));
+        }
+        long t0 = System.nanoTime();
+        Arnes.correr(ts);
+        double s = (System.nanoTime() - t0) / 1e9;
+        int mal = 0;
+        for (int k = 0; k < claves; k++) {
+            if (aceptadas.get(k) > 1) {
+                mal++;
+            }
+        }
+        a.linea("Concurrencia: %d hilos x %d claves en %.3f s | claves aceptadas más de una vez: %d",
+                hilos, claves, s, mal);
+        if (mal > 0) {
+            a.falla("Concurrencia: " + mal + " claves aceptadas más de una vez");
+        }
+    }
+
+    /**
+     * Más claves que la capacidad: las más antiguas se olvidan. Una clave
+     * vencida vuelve a aceptarse.
+     */
+    private void limites() throws InterruptedException {
+        DedupWindow w = new DedupWindow(256, 60_000);
+        for (int i = 0; i < 100_000; i++) {
+            w.registrar("k-" + i);
+        }
+        boolean reciente = w.registrar("k-99999");
+        DedupWindow corta = new DedupWindow(16, 20);
+        boolean primera = corta.registrar("x");
+        boolean dentro = corta.registrar("x");
+        Thread.sleep(40);
+        boolean vencida = corta.registrar("x");
+        a.linea("Límites: size %d (capacidad 256) | reciente duplicada %s | dentro de la ventana %s | vencida %s",
+                w.size(), !reciente, !dentro, vencida);
+        if (w.size() > 256 || reciente || !primera || dentro || !vencida) {
+            a.falla("Límites: memoria no acotada o ventana incorrecta");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Deduplicación de comandos", "sin cantidades duplicadas y claves reintentables", a -> {
+            DedupWindowStress s = new DedupWindowStress(a);
+            s.reintentos();
+            s.fallaYReintento();
+            s.concurrencia();
+            s.limites();
+        });
+    }
+}
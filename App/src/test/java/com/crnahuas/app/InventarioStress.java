@@ -0,0 +1,205 @@
+package com.crnahuas.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de estrés multi-hilo del {@link Inventario} (producto "caliente" en
+ * una venta flash). Verifica y reporta: - Sin sobreventa: lo reservado nunca
+ * supera el stock y reservado + disponible = stock inicial. - Sin rechazos
+ * falsos: en la fase de solo reservas el stock solo baja, así que un rechazo de
+ * qty es legítimo solo si al final quedan menos de qty unidades. - Venta flash
+ * con el stock repartido en franjas chicas: en cada ronda reservan exactamente
+ * tantos hilos como alcanza el stock. - Conservación con reservas y
+ * liberaciones mezcladas. - Throughput de reservas.
+ *
+ * Opciones: --hilos, --stock, --qty-max, --rondas, --semilla (ver
+ * {@link Arnes}).
+ */
+final class InventarioStress {
+
+    private static final String SKU = "Zapatilla running";
+
+    private final Arnes a;
+    private final int hilos;
+    private final long stock;
+    private final int qtyMax;
+    private final int rondas;
+    private final long semilla;
+
+    private InventarioStress(Arnes a) {
+        this.a = a;
+        this.hilos = a.entero("hilos", 16, 1);
+        this.stock = a.largo("stock", 100_000, 0);
+        this.qtyMax = a.entero("qty-max", 12, 1);
+        this.rondas = a.entero("rondas", 20_000, 1);
+        this.semilla = a.largo("semilla", 42, Long.MIN_VALUE);
+        a.sinOpcionesExtra();
+    }
+
+    /**
+     * Fase 1: todos los hilos reservan cantidades al azar hasta que se agota
+     * el stock.
+     */
+    private void soloReservas() throws InterruptedException {
+        Inventario inv = new Inventario();
+        inv.reponer(SKU, stock);
+        AtomicLong reservado = new AtomicLong();
+        long[] menorRechazo = new long[hilos];
+        long[] operaciones = new long[hilos];
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final int id = h;
+            menorRechazo[id] = Long.MAX_VALUE;
+            ts.add(new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(semilla + id);
+                int seguidos = 0;
+                while (seguidos < 50) { // se detiene tras varios rechazos consecutivos
+                    int qty = 1 + r.nextInt(qtyMax);
+                    operaciones[id]++;
+                    if (inv.reservar(SKU, qty)) {
+                        reservado.addAndGet(qty);
+                        seguidos = 0;
+                    } else {
+                        menorRechazo[id] = Math.min(menorRechazo[id], qty);
+                        seguidos++;
+                    }
+                }
+            }, "stress-" + h));
+        }
+        long t0 = System.nanoTime();
+        Arnes.correr(ts);
+        double seg = (System.nanoTime() - t0) / 1e9;
+
+        long quedan = inv.disponible(SKU);
+        long ops = 0;
+        long menor = Long.MAX_VALUE;
+        for (int h = 0; h < hilos; h++) {
+            ops += operaciones[h];
+            menor = Math.min(menor, menorRechazo[h]);
+        }
+        if (reservado.get() > stock) {
+            a.falla("sobreventa: reservado " + reservado.get() + " > stock " + stock);
+        }
+        if (reservado.get() + quedan != stock) {
+            a.falla("conservación: reservado " + reservado.get() + " + disponible " + quedan + " != " + stock);
+        }
+        if (menor <= quedan) {
+            a.falla("rechazo falso: se rechazó qty " + menor + " con " + quedan + " disponibles");
+        }
+        a.linea("Solo reservas: %d ops en %.2f s (%.0f ops/s) | reservado %d de %d | quedan %d | menor rechazo %s",
+                ops, seg, ops / seg, reservado.get(), stock, quedan, menor == Long.MAX_VALUE ? "-" : menor);
+    }
+
+    /**
+     * Fase 2: venta flash por rondas. Con n hilos, cada ronda repone
+     * 9 * (n / 2) + 7 unidades (16 con 2 hilos: franjas de 2) y cada hilo pide
+     * 9 a la vez; en cada ronda exactamente n / 2 deben reservar.
+     */
+    private void fragmentacion(int n) throws InterruptedException {
+        int esperados = n / 2;
+        long[] rondasMal = new long[1];
+        long[] exitosMin = {Long.MAX_VALUE};
+        Inventario[] inv = new Inventario[1];
+        boolean[] res = new boolean[n];
+        CyclicBarrier inicio = new CyclicBarrier(n, () -> {
+            inv[0] = new Inventario();
+            inv[0].reponer(SKU, 9L * esperados + 7);
+        });
+        CyclicBarrier fin = new CyclicBarrier(n, () -> {
+            int ok = 0;
+            for (boolean b : res) {
+                ok += b ? 1 : 0;
+            }
+            if (ok != esperados) {
+                rondasMal[0]++;
+            }
+            exitosMin[0] = Math.min(exitosMin[0], ok);
+        });
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < n; h++) {
+            final int id = h;
+            ts.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < rondas; i++) {
+                        inicio.await();
+                        res[id] = inv[0].reservar(SKU, 9);
+                        fin.await();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "flash-" + h));
+        }
+        Arnes.correr(ts);
+        if (rondasMal[0] > 0) {
+            a.falla("venta flash con " + n + " hilos: " + rondasMal[0] + " rondas sin " + esperados
+                    + " éxitos (mínimo " + exitosMin[0] + ")");
+        }
+        a.linea("Venta flash %d hilos x 9 de %d: %d rondas | incorrectas %d",
+                n, 9L * esperados + 7, rondas, rondasMal[0]);
+    }
+
+    /**
+     * Fase 3: reservas y liberaciones mezcladas; al devolver todo, el stock
+     * debe quedar igual que al inicio.
+     */
+    private void mezcla() throws InterruptedException {
+        Inventario inv = new Inventario();
+        long inicial = Math.max(hilos * (long) qtyMax / 2, 1);
+        inv.reponer(SKU, inicial);
+        AtomicLong enCarritos = new AtomicLong();
+        AtomicLong maxEnCarritos = new AtomicLong();
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final int id = h;
+            ts.add(new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(semilla * 31 + id);
+                List<Integer> mias = new ArrayList<>();
+                for (int i = 0; i < rondas; i++) {
+                    if (mias.isEmpty() || r.nextBoolean()) {
+                        int qty = 1 + r.nextInt(qtyMax);
+                        if (inv.reservar(SKU, qty)) {
+                            mias.add(qty);
+                            maxEnCarritos.accumulateAndGet(enCarritos.addAndGet(qty), Math::max);
+                        }
+                    } else {
+                        int qty = mias.remove(mias.size() - 1);
+                        enCarritos.addAndGet(-qty);
+                        inv.liberar(SKU, qty);
+                    }
+                }
+                for (int qty : mias) {
+                    enCarritos.addAndGet(-qty);
+                    inv.liberar(SKU, qty);
+                }
+            }, "mezcla-" + h));
+        }
+        Arnes.correr(ts);
+        long quedan = inv.disponible(SKU);
+        if (quedan != inicial) {
+            a.falla("mezcla: disponible " + quedan + " != inicial " + inicial);
+        }
+        if (maxEnCarritos.get() > inicial) {
+            a.falla("mezcla: sobreventa, " + maxEnCarritos.get() + " en carritos con stock " + inicial);
+        }
+        a.linea("Mezcla reservar/liberar: stock %d | máximo en carritos %d | al final %d",
+                inicial, maxEnCarritos.get(), quedan);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Estrés de inventario", "sin sobreventa ni rechazos falsos", a -> {
+            InventarioStress s = new InventarioStress(a);
+            a.linea("%d hilos, semilla %d", s.hilos, s.semilla);
+            s.soloReservas();
+            s.fragmentacion(2);
+            if (s.hilos > 2) {
+                s.fragmentacion(s.hilos);
+            }
+            s.mezcla();
+        });
+    }
+}
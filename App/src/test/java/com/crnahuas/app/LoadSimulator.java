@@ -0,0 +1,296 @@
+package com.crnahuas.app;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulador de carga determinista sobre la capa de comandos (Cart + Invoker +
+ * Commands), para planificar capacidad. - Sesiones de compradores con semilla
+ * propia (mismo resultado sin importar qué hilo la ejecute). - Popularidad de
+ * productos Zipf. - Mezcla de comandos agregar / eliminar / disminuir /
+ * descuentos. - Llegada de sesiones a tasa fija opcional (la latencia se mide
+ * desde la llegada programada, sin omisión coordinada). - Reporta throughput,
+ * percentiles de latencia, pausas de GC y bytes asignados por comando.
+ *
+ * Opciones: --sesiones, --hilos, --semilla, --productos, --zipf, --comandos,
+ * --tasa, --inventario, --pct-agregar, --pct-eliminar, --pct-disminuir (ver
+ * {@link Arnes}).
+ */
+final class LoadSimulator {
+
+    /**
+     * Configuración de la simulación (cada campo trae su valor por defecto).
+     */
+    static final class Config {
+
+        long sesiones = 100_000;         // --sesiones
+        int hilos = Runtime.getRuntime().availableProcessors(); // --hilos
+        long semilla = 42;               // --semilla
+        int productos = 1_000;           // --productos
+        double zipf = 1.0;               // --zipf (exponente)
+        int comandosPorSesion = 20;      // --comandos
+        double tasa = 0;                 // --tasa sesiones/s (0 = sin límite)
+        boolean inventario = false;      // --inventario (stock compartido)
+        /** % agregar, eliminar, disminuir; el resto son descuentos. */
+        int pctAgregar = 50;             // --pct-agregar
+        int pctEliminar = 10;            // --pct-eliminar
+        int pctDisminuir = 15;           // --pct-disminuir
+
+        static Config desde(Arnes a) {
+            Config c = new Config();
+            c.sesiones = a.largo("sesiones", c.sesiones, 1);
+            c.hilos = a.entero("hilos", c.hilos, 1);
+            c.semilla = a.largo("semilla", c.semilla, Long.MIN_VALUE);
+            c.productos = a.entero("productos", c.productos, 1);
+            c.zipf = a.real("zipf", c.zipf);
+            c.comandosPorSesion = a.entero("comandos", c.comandosPorSesion, 1);
+            c.tasa = a.real("tasa", c.tasa);
+            c.inventario = a.logico("inventario", c.inventario);
+            c.pctAgregar = a.entero("pct-agregar", c.pctAgregar, 0);
+            c.pctEliminar = a.entero("pct-eliminar", c.pctEliminar, 0);
+            c.pctDisminuir = a.entero("pct-disminuir", c.pctDisminuir, 0);
+            a.sinOpcionesExtra();
+            if (c.pctAgregar + c.pctEliminar + c.pctDisminuir > 100) {
+                throw new IllegalArgumentException("La suma de porcentajes no puede superar 100");
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Muestreo Zipf por inversión de la CDF precalculada (búsqueda binaria).
+     */
+    static final class Zipf {
+
+        private final double[] cdf;
+
+        Zipf(int n, double s) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, s);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        /**
+         * @return rango 0-based (0 = producto más popular)
+         */
+        int muestra(SplittableRandom r) {
+            double u = r.nextDouble();
+            int lo = 0;
+            int hi = cdf.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Resultado de un hilo.
+     */
+    private static final class Parcial {
+
+        final Histograma latencias = new Histograma();
+        final Histograma sesiones = new Histograma();
+        long comandos;
+        long rechazados;
+        long bytes = -1;
+    }
+
+    private final Config cfg;
+    private final Component[] catalogo;
+    private final Zipf zipf;
+    private final Inventario inventario;
+    private final AtomicLong siguienteSesion = new AtomicLong();
+
+    LoadSimulator(Config cfg) {
+        this.cfg = cfg;
+        this.catalogo = new Component[cfg.productos];
+        String[] categorias = {"BASICO", "CALZADO", "ABRIGO", "ACCESORIO"};
+        SplittableRandom r = new SplittableRandom(cfg.semilla);
+        for (int i = 0; i < cfg.productos; i++) {
+            catalogo[i] = new ProductComponent("Producto " + i, categorias[i % categorias.length],
+                    1_000 + r.nextInt(99_000));
+        }
+        this.zipf = new Zipf(cfg.productos, cfg.zipf);
+        if (cfg.inventario) {
+            inventario = new Inventario();
+            for (Component c : catalogo) {
+                inventario.reponer(c.getNombre(), Long.MAX_VALUE / (2L * cfg.productos));
+            }
+        } else {
+            inventario = null;
+        }
+    }
+
+    /**
+     * Ejecuta una sesión completa: carrito nuevo y {@code comandosPorSesion}
+     * comandos generados con la semilla de la sesión.
+     */
+    private void sesion(long id, Parcial out) {
+        SplittableRandom r = new SplittableRandom(cfg.semilla ^ (id * 0x9E3779B97F4A7C15L));
+        Cart cart = new Cart(inventario);
+        CartContext ctx = new CartContext(cart);
+        Invoker inv = new Invoker();
+        for (int k = 0; k < cfg.comandosPorSesion; k++) {
+            Command c = generar(r, ctx, cart.getItemCount());
+            long t0 = System.nanoTime();
+            inv.agregar(c);
+            try {
+                inv.ejecutarTodo();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                out.rechazados++;
+            }
+            out.latencias.registrar(System.nanoTime() - t0);
+            out.comandos++;
+        }
+    }
+
+    private Command generar(SplittableRandom r, CartContext ctx, int lineas) {
+        int dado = r.nextInt(100);
+        if (dado < cfg.pctAgregar || lineas == 0) {
+            return new AddProductToCartCommand(ctx, catalogo[zipf.muestra(r)], 1 + r.nextInt(3));
+        }
+        dado -= cfg.pctAgregar;
+        if (dado < cfg.pctEliminar) {
+            return new RemoveProductAtIndexCommand(ctx, 1 + r.nextInt(lineas));
+        }
+        dado -= cfg.pctEliminar;
+        if (dado < cfg.pctDisminuir) {
+            return new DecreaseProductQtyAtIndexCommand(ctx, 1 + r.nextInt(lineas), 1);
+        }
+        return switch (r.nextInt(5)) {
+            case 0 -> new ApplyTenPercentToAllCommand(ctx);
+            case 1 -> new ApplyCategoryTwentyToAllCommand(ctx, catalogo[zipf.muestra(r)].getCategoria());
+            case 2 -> new ApplyFlatAmountToAllCommand(ctx, 1 + r.nextInt(500));
+            case 3 -> new ResetDiscountsAllCommand(ctx);
+            default -> new TotalCommand(ctx);
+        };
+    }
+
+    /**
+     * Lectura del total (lo que hace el usuario al ver el carrito).
+     */
+    private static final class TotalCommand implements Command {
+
+        private final CartContext ctx;
+        private double ultimo;
+
+        TotalCommand(CartContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void ejecutar() {
+            ultimo = ctx.getCart().total();
+        }
+
+        @Override
+        public String nombre() {
+            return "Total " + ultimo;
+        }
+    }
+
+    private void trabajador(Parcial out, long inicioNanos) {
+        ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean stmx = (tmx instanceof com.sun.management.ThreadMXBean s) ? s : null;
+        long bytes0 = (stmx != null) ? stmx.getCurrentThreadAllocatedBytes() : -1;
+        double nanosEntreSesiones = (cfg.tasa > 0) ? 1e9 / cfg.tasa : 0;
+        long id;
+        while ((id = siguienteSesion.getAndIncrement()) < cfg.sesiones) {
+            long llegada = inicioNanos + (long) (id * nanosEntreSesiones);
+            if (nanosEntreSesiones > 0) {
+                long espera;
+                while ((espera = llegada - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+            } else {
+                llegada = System.nanoTime();
+            }
+            sesion(id, out);
+            out.sesiones.registrar(System.nanoTime() - llegada);
+        }
+        if (stmx != null && bytes0 >= 0) {
+            out.bytes = stmx.getCurrentThreadAllocatedBytes() - bytes0;
+        }
+    }
+
+    /**
+     * Corre la simulación e imprime el reporte.
+     */
+    void ejecutar(Arnes a) throws InterruptedException {
+        long[] gc0 = gc();
+        List<Parcial> parciales = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < cfg.hilos; i++) {
+            Parcial p = new Parcial();
+            parciales.add(p);
+            Thread t = new Thread(() -> trabajador(p, inicio), "shopper-" + i);
+            hilos.add(t);
+            t.start();
+        }
+        for (Thread t : hilos) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long[] gc1 = gc();
+
+        Parcial total = new Parcial();
+        total.bytes = 0;
+        for (Parcial p : parciales) {
+            total.latencias.combinar(p.latencias);
+            total.sesiones.combinar(p.sesiones);
+            total.comandos += p.comandos;
+            total.rechazados += p.rechazados;
+            total.bytes = (p.bytes < 0 || total.bytes < 0) ? -1 : total.bytes + p.bytes;
+        }
+
+        a.linea("Semilla %d, %d hilos, %d productos, zipf %.2f", cfg.semilla, cfg.hilos, cfg.productos, cfg.zipf);
+        a.linea("Sesiones: %d | Comandos: %d (rechazados %d) | Tiempo: %.2f s",
+                cfg.sesiones, total.comandos, total.rechazados, segundos);
+        a.linea("Throughput: %.0f comandos/s | %.0f sesiones/s", total.comandos / segundos, cfg.sesiones / segundos);
+        a.linea("Latencia comando (µs) %s", total.latencias.resumenMicros());
+        a.linea("Latencia sesión   (µs) %s", total.sesiones.resumenMicros());
+        a.linea("GC: %d colecciones, %d ms acumulados", gc1[0] - gc0[0], gc1[1] - gc0[1]);
+        if (total.bytes >= 0) {
+            a.linea("Asignación: %.1f bytes/comando", (double) total.bytes / total.comandos);
+        } else {
+            a.linea("Asignación: no disponible en esta JVM");
+        }
+    }
+
+    /**
+     * @return {colecciones, ms} acumulados de todos los recolectores
+     */
+    private static long[] gc() {
+        long n = 0;
+        long ms = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(b.getCollectionCount(), 0);
+            ms += Math.max(b.getCollectionTime(), 0);
+        }
+        return new long[]{n, ms};
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arnes.ejecutar(args, "Simulación de carga", "simulación completa",
+                a -> new LoadSimulator(Config.desde(a)).ejecutar(a));
+    }
+}